@@ -0,0 +1,626 @@
+package org.asf.software.sideterminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ *
+ * Byte pipe - bounded ring buffer connecting a writer and a reader, used as the
+ * backing buffer of the shell streams.<br/>
+ * <br/>
+ * Readers block until data arrives, what happens to writers once the buffer is
+ * full depends on the {@link OverflowPolicy overflow policy}. Waiting is done
+ * through a lock condition so virtual threads unmount instead of pinning their
+ * carrier.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class BytePipe {
+
+	/**
+	 * Default pipe capacity
+	 */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	/**
+	 * Capacity value for pipes that grow without limit
+	 */
+	public static final int UNBOUNDED = -1;
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	/**
+	 *
+	 * Defines what happens when data is written to a full pipe
+	 *
+	 * @author Sky Swimmer - AerialWorks Software Foundation
+	 *
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Blocks the writer until the reader has made room
+		 */
+		BLOCK,
+
+		/**
+		 * Discards the oldest buffered bytes to make room
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Writes the overflowing bytes to a temporary file
+		 */
+		SPILL;
+
+		/**
+		 * Parses a policy name (block, drop or spill)
+		 *
+		 * @param name Policy name
+		 * @param def  Default policy
+		 * @return OverflowPolicy instance
+		 */
+		public static OverflowPolicy parse(String name, OverflowPolicy def) {
+			if (name == null)
+				return def;
+			switch (name.trim().toLowerCase()) {
+			case "block":
+				return BLOCK;
+			case "drop":
+			case "drop_oldest":
+				return DROP_OLDEST;
+			case "spill":
+				return SPILL;
+			default:
+				return def;
+			}
+		}
+
+	}
+
+	private byte[] buffer;
+	private int head = 0;
+	private int size = 0;
+	private final int maxCapacity;
+	private final OverflowPolicy policy;
+
+	private RandomAccessFile spillFile;
+	private File spillPath;
+	private long spillReadPos = 0;
+	private long spillWritePos = 0;
+
+	private long droppedBytes = 0;
+	private long spilledBytes = 0;
+
+	private boolean closed = false;
+	private boolean finished = false;
+
+	private Runnable dataListener;
+	private Runnable spaceListener;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	/**
+	 * Creates a pipe with the default capacity
+	 */
+	public BytePipe() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new blocking pipe
+	 *
+	 * @param maxCapacity Maximal amount of buffered bytes before writers block
+	 *                    ({@link #UNBOUNDED} to grow without limit)
+	 */
+	public BytePipe(int maxCapacity) {
+		this(maxCapacity, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * Creates a new pipe
+	 *
+	 * @param maxCapacity Maximal amount of bytes kept in memory
+	 *                    ({@link #UNBOUNDED} to grow without limit)
+	 * @param policy      Policy to apply once the capacity is reached
+	 */
+	public BytePipe(int maxCapacity, OverflowPolicy policy) {
+		this.maxCapacity = maxCapacity;
+		this.policy = policy;
+		if (maxCapacity == UNBOUNDED)
+			buffer = new byte[INITIAL_CAPACITY];
+		else
+			buffer = new byte[Math.max(1, Math.min(INITIAL_CAPACITY, maxCapacity))];
+	}
+
+	/**
+	 * Retrieves the maximal capacity ({@link #UNBOUNDED} if not limited)
+	 */
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	/**
+	 * Retrieves the overflow policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Assigns the listeners notified when the pipe state changes, used by
+	 * non-blocking consumers such as the network event loop<br/>
+	 * <br/>
+	 * Listeners are called while the pipe is locked and must not block.
+	 *
+	 * @param dataListener  Called when data has been written or the pipe has been
+	 *                      finished or closed (null to remove)
+	 * @param spaceListener Called when data has been read and room has been made
+	 *                      (null to remove)
+	 */
+	public void setListeners(Runnable dataListener, Runnable spaceListener) {
+		lock.lock();
+		try {
+			this.dataListener = dataListener;
+			this.spaceListener = spaceListener;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves the amount of bytes discarded because the pipe was full
+	 */
+	public long getDroppedBytes() {
+		lock.lock();
+		try {
+			return droppedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves the amount of bytes written to the spill file because the pipe
+	 * was full
+	 */
+	public long getSpilledBytes() {
+		lock.lock();
+		try {
+			return spilledBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves the amount of bytes that can be read without blocking
+	 */
+	public int available() {
+		lock.lock();
+		try {
+			return (int) Math.min(Integer.MAX_VALUE, size + spillWritePos - spillReadPos);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if the pipe has been closed
+	 */
+	public boolean isClosed() {
+		lock.lock();
+		try {
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if the pipe will reach end-of-stream once drained
+	 */
+	public boolean isFinished() {
+		lock.lock();
+		try {
+			return finished || closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the pipe, discarding buffered data and waking all waiting threads
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			size = 0;
+			head = 0;
+			closeSpill();
+			changed.signalAll();
+			dataAvailable();
+			if (spaceListener != null)
+				spaceListener.run();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the end of the written data, readers receive end-of-stream once the
+	 * buffered data has been read
+	 */
+	public void finish() {
+		lock.lock();
+		try {
+			finished = true;
+			changed.signalAll();
+			dataAvailable();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wakes all threads waiting on this pipe so they re-check their conditions
+	 */
+	public void wakeUp() {
+		lock.lock();
+		try {
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes a single byte, blocks while the pipe is full (blocking policy only)
+	 *
+	 * @param b Byte to write
+	 * @return True if written, false if the pipe was closed
+	 */
+	public boolean write(int b) {
+		return write(new byte[] { (byte) b }, 0, 1) == 1;
+	}
+
+	/**
+	 * Writes bytes to the pipe, blocks while the pipe is full (blocking policy
+	 * only)
+	 *
+	 * @param data   Byte array
+	 * @param offset Array offset
+	 * @param length Amount of bytes to write
+	 * @return Amount of bytes written (less than length if the pipe was closed or
+	 *         the thread was interrupted)
+	 */
+	public int write(byte[] data, int offset, int length) {
+		lock.lock();
+		try {
+			int written = 0;
+			while (written < length) {
+				if (closed)
+					return written;
+				if (spillWritePos != spillReadPos) {
+					if (!spill(data, offset + written, length - written))
+						drop(data, offset + written, length - written);
+					written = length;
+					changed.signalAll();
+					dataAvailable();
+					break;
+				}
+				if (size == buffer.length && !grow()) {
+					if (policy == OverflowPolicy.DROP_OLDEST) {
+						drop(data, offset + written, length - written);
+						written = length;
+						changed.signalAll();
+						dataAvailable();
+						break;
+					} else if (policy == OverflowPolicy.SPILL) {
+						if (!spill(data, offset + written, length - written))
+							drop(data, offset + written, length - written);
+						written = length;
+						changed.signalAll();
+						dataAvailable();
+						break;
+					}
+					try {
+						changed.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return written;
+					}
+					continue;
+				}
+				written += put(data, offset + written, length - written);
+				changed.signalAll();
+				dataAvailable();
+			}
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes as many bytes as possible without blocking (policies other than
+	 * blocking accept all bytes)
+	 *
+	 * @param data   Byte array
+	 * @param offset Array offset
+	 * @param length Amount of bytes to write
+	 * @return Amount of bytes written
+	 */
+	public int offer(byte[] data, int offset, int length) {
+		lock.lock();
+		try {
+			if (policy != OverflowPolicy.BLOCK)
+				return write(data, offset, length);
+			int written = 0;
+			while (written < length && !closed) {
+				if (size == buffer.length && !grow())
+					break;
+				written += put(data, offset + written, length - written);
+			}
+			if (written != 0) {
+				changed.signalAll();
+				dataAvailable();
+			}
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads a single byte, blocks until data is available
+	 *
+	 * @return Byte value or -1 if the end of the stream was reached
+	 */
+	public int read() {
+		return read((BooleanSupplier) null);
+	}
+
+	/**
+	 * Reads a single byte, blocks until data is available or the given condition
+	 * no longer holds
+	 *
+	 * @param condition Condition to check while waiting (null to wait
+	 *                  indefinitely)
+	 * @return Byte value or -1 if the end of the stream was reached or the
+	 *         condition failed
+	 */
+	public int read(BooleanSupplier condition) {
+		byte[] b = new byte[1];
+		if (read(b, 0, 1, condition) != 1)
+			return -1;
+		return b[0] & 0xff;
+	}
+
+	/**
+	 * Reads bytes into the given array, blocks until at least one byte is
+	 * available
+	 *
+	 * @param data   Output array
+	 * @param offset Array offset
+	 * @param length Maximal amount of bytes to read
+	 * @return Amount of bytes read or -1 if the end of the stream was reached
+	 */
+	public int read(byte[] data, int offset, int length) {
+		return read(data, offset, length, null);
+	}
+
+	/**
+	 * Reads bytes into the given array, blocks until at least one byte is
+	 * available or the given condition no longer holds
+	 *
+	 * @param data      Output array
+	 * @param offset    Array offset
+	 * @param length    Maximal amount of bytes to read
+	 * @param condition Condition to check while waiting (null to wait
+	 *                  indefinitely)
+	 * @return Amount of bytes read or -1 if the end of the stream was reached or
+	 *         the condition failed
+	 */
+	public int read(byte[] data, int offset, int length, BooleanSupplier condition) {
+		return read(data, offset, length, condition, true);
+	}
+
+	/**
+	 * Reads bytes into the given array, blocks until at least one byte is
+	 * available or the given condition no longer holds
+	 *
+	 * @param data      Output array
+	 * @param offset    Array offset
+	 * @param length    Maximal amount of bytes to read
+	 * @param condition Condition to check while waiting (null to wait
+	 *                  indefinitely)
+	 * @param poll      True to re-check the condition periodically, false to
+	 *                  only re-check it when the pipe changes or
+	 *                  {@link #wakeUp()} is called
+	 * @return Amount of bytes read or -1 if the end of the stream was reached or
+	 *         the condition failed
+	 */
+	public int read(byte[] data, int offset, int length, BooleanSupplier condition, boolean poll) {
+		lock.lock();
+		try {
+			if (length == 0)
+				return 0;
+			if (!awaitData(condition, poll))
+				return -1;
+			return take(data, offset, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the bytes that are available without blocking
+	 *
+	 * @param data   Output array
+	 * @param offset Array offset
+	 * @param length Maximal amount of bytes to read
+	 * @return Amount of bytes read (0 if none are available) or -1 if the end of
+	 *         the stream was reached
+	 */
+	public int poll(byte[] data, int offset, int length) {
+		lock.lock();
+		try {
+			if (size == 0 && spillReadPos == spillWritePos)
+				return closed || finished ? -1 : 0;
+			return take(data, offset, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean awaitData(BooleanSupplier condition, boolean poll) {
+		while (size == 0 && spillReadPos == spillWritePos) {
+			if (closed || finished)
+				return false;
+			if (condition != null && !condition.getAsBoolean())
+				return false;
+			try {
+				if (condition != null && poll)
+					changed.await(100, TimeUnit.MILLISECONDS);
+				else
+					changed.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return condition == null || condition.getAsBoolean();
+	}
+
+	private int take(byte[] data, int offset, int length) {
+		if (size == 0)
+			return takeSpilled(data, offset, length);
+
+		int count = Math.min(length, size);
+		int first = Math.min(count, buffer.length - head);
+		System.arraycopy(buffer, head, data, offset, first);
+		if (first < count)
+			System.arraycopy(buffer, 0, data, offset + first, count - first);
+		head = (head + count) % buffer.length;
+		size -= count;
+		if (size == 0)
+			head = 0;
+		changed.signalAll();
+		if (spaceListener != null)
+			spaceListener.run();
+		return count;
+	}
+
+	private int takeSpilled(byte[] data, int offset, int length) {
+		int count = (int) Math.min(length, spillWritePos - spillReadPos);
+		try {
+			spillFile.seek(spillReadPos);
+			spillFile.readFully(data, offset, count);
+			spillReadPos += count;
+			if (spillReadPos == spillWritePos) {
+				spillReadPos = 0;
+				spillWritePos = 0;
+				spillFile.setLength(0);
+			}
+			return count;
+		} catch (IOException e) {
+			droppedBytes += spillWritePos - spillReadPos;
+			closeSpill();
+			return 0;
+		}
+	}
+
+	private void dataAvailable() {
+		if (dataListener != null)
+			dataListener.run();
+	}
+
+	private int put(byte[] data, int offset, int length) {
+		int count = Math.min(length, buffer.length - size);
+		int tail = (head + size) % buffer.length;
+		int first = Math.min(count, buffer.length - tail);
+		System.arraycopy(data, offset, buffer, tail, first);
+		if (first < count)
+			System.arraycopy(data, offset + first, buffer, 0, count - first);
+		size += count;
+		return count;
+	}
+
+	private void drop(byte[] data, int offset, int length) {
+		if (length >= buffer.length) {
+			droppedBytes += size + length - buffer.length;
+			offset += length - buffer.length;
+			length = buffer.length;
+			head = 0;
+			size = 0;
+		} else {
+			int discard = Math.max(0, size + length - buffer.length);
+			droppedBytes += discard;
+			head = (head + discard) % buffer.length;
+			size -= discard;
+		}
+		put(data, offset, length);
+	}
+
+	private boolean spill(byte[] data, int offset, int length) {
+		try {
+			if (spillFile == null) {
+				spillPath = File.createTempFile("stsh", ".spill");
+				spillPath.deleteOnExit();
+				spillFile = new RandomAccessFile(spillPath, "rw");
+			}
+			spillFile.seek(spillWritePos);
+			spillFile.write(data, offset, length);
+			spillWritePos += length;
+			spilledBytes += length;
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void closeSpill() {
+		spillReadPos = 0;
+		spillWritePos = 0;
+		if (spillFile != null) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+			}
+			spillPath.delete();
+			spillFile = null;
+			spillPath = null;
+		}
+	}
+
+	private boolean grow() {
+		if (maxCapacity != UNBOUNDED && buffer.length >= maxCapacity)
+			return false;
+		long newLength = (long) buffer.length * 2;
+		if (maxCapacity != UNBOUNDED)
+			newLength = Math.min(newLength, maxCapacity);
+		if (newLength > Integer.MAX_VALUE - 8)
+			newLength = Integer.MAX_VALUE - 8;
+		if (newLength <= buffer.length)
+			return false;
+
+		byte[] newBuffer = new byte[(int) newLength];
+		int first = Math.min(size, buffer.length - head);
+		System.arraycopy(buffer, head, newBuffer, 0, first);
+		if (first < size)
+			System.arraycopy(buffer, 0, newBuffer, first, size - first);
+		buffer = newBuffer;
+		head = 0;
+		return true;
+	}
+
+}
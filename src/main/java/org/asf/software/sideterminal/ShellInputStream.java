@@ -1,34 +1,50 @@
 package org.asf.software.sideterminal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.function.Supplier;
 
 public class ShellInputStream extends InputStream {
 
-	private boolean closed = false;
-	private ArrayList<Integer> buffer = new ArrayList<Integer>();
+	private BytePipe buffer;
 
 	private ShellOutputStream delegate = null;
 	private OutputStream delegateOutput = null;
 
 	public ShellInputStream() {
+		this(BytePipe.DEFAULT_CAPACITY);
+	}
+
+	public ShellInputStream(int capacity) {
+		buffer = new BytePipe(capacity);
 	}
 
 	public ShellInputStream(ShellOutputStream delegate) {
+		this();
 		this.delegate = delegate;
 	}
 
 	public ShellInputStream(OutputStream delegate) {
+		this();
 		this.delegateOutput = delegate;
 	}
 
 	@Override
 	public void close() {
-		closed = true;
-		buffer.clear();
+		buffer.close();
+	}
+
+	BytePipe getPipe() {
+		return buffer;
+	}
+
+	@Override
+	public int available() {
+		if (delegate != null)
+			return delegate.available();
+		return buffer.available();
 	}
 
 	public void write(int i) throws IOException {
@@ -37,7 +53,16 @@ public class ShellInputStream extends InputStream {
 		if (delegateOutput != null)
 			delegateOutput.write(i);
 		if (delegate == null && delegateOutput == null)
-			buffer.add(i);
+			buffer.write(i);
+	}
+
+	public void write(byte[] data, int offset, int length) throws IOException {
+		if (delegate != null)
+			delegate.write(data, offset, length);
+		if (delegateOutput != null)
+			delegateOutput.write(data, offset, length);
+		if (delegate == null && delegateOutput == null)
+			buffer.write(data, offset, length);
 	}
 
 	public String readStringUntilDelim(int delim) {
@@ -54,75 +79,78 @@ public class ShellInputStream extends InputStream {
 	}
 
 	public byte[] readUntilDelim(int delim) {
-		ArrayList<Integer> buffer = new ArrayList<Integer>();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		while (true) {
 			int d = read();
 			if (d == -1)
 				return null;
 			if (d == delim)
 				break;
-			buffer.add(d);
+			buffer.write(d);
 		}
-		byte[] data = new byte[buffer.size()];
-		for (int i = 0; i < data.length; i++)
-			data[i] = (byte) (int) buffer.get(i);
-		return data;
+		return buffer.toByteArray();
 	}
 
 	@Override
 	public int read() {
-		while (buffer.size() == 0) {
-			if (autoclose)
-				close();
-			if (closed)
-				return -1;
+		if (delegate != null)
 			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				break;
+				return delegate.read();
+			} catch (IOException e) {
+				return -1;
 			}
-		}
-		if (closed)
-			return -1;
-		int i = buffer.get(0);
-		buffer.remove(0);
-		return i;
+		return buffer.read();
 	}
 
 	public int read(Supplier<Boolean> check) {
+		if (delegate != null)
+			return delegate.getPipe().read(() -> check.get());
+		return buffer.read(() -> check.get());
+	}
+
+	@Override
+	public int read(byte[] data, int offset, int length) {
 		if (delegate != null)
 			try {
-				return delegate.read();
-			} catch (IOException e1) {
-			}
-		while (buffer.size() == 0) {
-			if (autoclose)
-				close();
-			if (closed || !check.get())
+				return delegate.read(data, offset, length);
+			} catch (IOException e) {
 				return -1;
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				break;
 			}
-		}
-		if (closed)
-			return -1;
-		if (!check.get())
-			return -1;
-		int i = buffer.get(0);
-		buffer.remove(0);
-		return i;
+		return buffer.read(data, offset, length);
+	}
+
+	public int read(byte[] data, int offset, int length, Supplier<Boolean> check) {
+		if (delegate != null)
+			return delegate.getPipe().read(data, offset, length, () -> check.get());
+		return buffer.read(data, offset, length, () -> check.get());
+	}
+
+	/**
+	 * Reads data while the given check holds, the check is only repeated when
+	 * the stream receives data or {@link #wakeUp()} is called
+	 */
+	public int readSignalled(byte[] data, int offset, int length, Supplier<Boolean> check) {
+		if (delegate != null)
+			return delegate.getPipe().read(data, offset, length, () -> check.get(), false);
+		return buffer.read(data, offset, length, () -> check.get(), false);
+	}
+
+	/**
+	 * Wakes up readers waiting on this stream so they re-check their condition
+	 */
+	public void wakeUp() {
+		if (delegate != null)
+			delegate.getPipe().wakeUp();
+		else
+			buffer.wakeUp();
 	}
 
 	public String readLine() {
 		return readStringUntilDelim('\n').replace("\r", "");
 	}
 
-	boolean autoclose = false;
-
 	public void autoClose() {
-		autoclose = true;
+		buffer.finish();
 	}
 
 }
@@ -0,0 +1,242 @@
+package org.asf.software.sideterminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ *
+ * Background job of a shell - a command chain started with {@code &}, running
+ * on its own thread with its output captured in a bounded buffer.<br/>
+ * <br/>
+ * The buffer capacity and overflow policy are configured by the
+ * 'sideterminal.job.buffer' and 'sideterminal.job.overflow' (block, drop or
+ * spill) system properties, by default the oldest output is dropped once the
+ * buffer is full so jobs never block on unread output.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class ShellJob {
+
+	public static enum State {
+		RUNNING, STOPPED, DONE
+	}
+
+	private final int id;
+	private final String command;
+	private final ShellOutputStream output = new ShellOutputStream(
+			Integer.getInteger("sideterminal.job.buffer", BytePipe.DEFAULT_CAPACITY),
+			BytePipe.OverflowPolicy.parse(System.getProperty("sideterminal.job.overflow"),
+					BytePipe.OverflowPolicy.DROP_OLDEST));
+	private final ArrayList<Process> processes = new ArrayList<Process>();
+
+	private Thread thread;
+	private volatile Integer status;
+	private volatile boolean stopped;
+	private volatile boolean done;
+	private boolean reported;
+
+	ShellJob(int id, String command) {
+		this.id = id;
+		this.command = command;
+	}
+
+	void start(Runnable task) {
+		thread = SideTermThreads.start(() -> {
+			try {
+				task.run();
+			} finally {
+				done = true;
+				output.autoClose();
+			}
+		}, "Shell Job " + id);
+	}
+
+	/**
+	 * Retrieves the job number
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Retrieves the command text of the job
+	 */
+	public String getCommand() {
+		return command;
+	}
+
+	/**
+	 * Retrieves the buffered job output, reads block until the job writes more
+	 * output or finishes
+	 */
+	public ShellOutputStream getOutput() {
+		return output;
+	}
+
+	/**
+	 * Retrieves the job state
+	 */
+	public State getState() {
+		if (done)
+			return State.DONE;
+		return stopped ? State.STOPPED : State.RUNNING;
+	}
+
+	/**
+	 * Retrieves the exit status of the last pipeline run by the job
+	 *
+	 * @return Exit status or null if no pipeline has finished yet
+	 */
+	public Integer getStatus() {
+		return status;
+	}
+
+	void setStatus(int status) {
+		this.status = status;
+	}
+
+	boolean isReported() {
+		return reported;
+	}
+
+	void setReported() {
+		reported = true;
+	}
+
+	/**
+	 * Retrieves the running processes of the job
+	 */
+	public List<Process> getProcesses() {
+		synchronized (processes) {
+			return new ArrayList<Process>(processes);
+		}
+	}
+
+	void addProcess(Process proc) {
+		synchronized (processes) {
+			processes.add(proc);
+		}
+	}
+
+	void removeProcess(Process proc) {
+		synchronized (processes) {
+			processes.remove(proc);
+		}
+	}
+
+	/**
+	 * Waits for the job to finish
+	 *
+	 * @return Exit status of the job (1 if it did not run any pipeline)
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public int waitFor() throws InterruptedException {
+		thread.join();
+		Integer status = this.status;
+		return status == null ? 1 : status;
+	}
+
+	/**
+	 * Terminates the job process trees, the job thread is interrupted if the job
+	 * is not running any process (such as java method calls)
+	 *
+	 * @param force True to kill the processes forcibly, false to request
+	 *              termination (processes still running after the termination
+	 *              timeout are killed forcibly)
+	 * @return Future completed once all job processes and their descendants have
+	 *         exited
+	 */
+	public CompletableFuture<Void> kill(boolean force) {
+		List<Process> processes = getProcesses();
+		if (stopped)
+			signal("CONT", pids());
+		stopped = false;
+		ArrayList<CompletableFuture<Void>> trees = new ArrayList<CompletableFuture<Void>>();
+		for (Process proc : processes)
+			trees.add(SideTermShell.terminateProcessTree(proc.toHandle(), force ? 0 : SideTermShell.TERMINATE_TIMEOUT));
+		if (processes.isEmpty() && thread != null)
+			thread.interrupt();
+		return CompletableFuture.allOf(trees.toArray(t -> new CompletableFuture<?>[t]));
+	}
+
+	/**
+	 * Suspends the job processes (unix systems only)
+	 *
+	 * @return True if successful, false otherwise
+	 */
+	public boolean stop() {
+		if (done || !signal("STOP", pids()))
+			return false;
+		stopped = true;
+		return true;
+	}
+
+	/**
+	 * Resumes suspended job processes (unix systems only)
+	 *
+	 * @return True if successful, false otherwise
+	 */
+	public boolean resume() {
+		if (!stopped)
+			return true;
+		if (!signal("CONT", pids()))
+			return false;
+		stopped = false;
+		return true;
+	}
+
+	private long[] pids() {
+		return getProcesses().stream().mapToLong(t -> t.pid()).toArray();
+	}
+
+	/**
+	 * Sends a signal to the given processes with the system kill command (unix
+	 * systems only)
+	 *
+	 * @param signal Signal name (such as STOP or CONT)
+	 * @param pids   Process IDs to signal
+	 * @return True if successful, false otherwise
+	 */
+	public static boolean signal(String signal, long... pids) {
+		if (File.separatorChar != '/')
+			return false;
+		if (pids.length == 0)
+			return true;
+
+		ArrayList<String> command = new ArrayList<String>();
+		command.add("kill");
+		command.add("-" + signal);
+		for (long pid : pids)
+			command.add(Long.toString(pid));
+		try {
+			Process proc = new ProcessBuilder(command).redirectErrorStream(true).start();
+			proc.getInputStream().readAllBytes();
+			return proc.waitFor() == 0;
+		} catch (IOException | InterruptedException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String state;
+		switch (getState()) {
+		case DONE:
+			Integer status = this.status;
+			state = status == null || status == 0 ? "Done" : "Exit " + status;
+			break;
+		case STOPPED:
+			state = "Stopped";
+			break;
+		default:
+			state = "Running";
+			break;
+		}
+		return "[" + id + "]  " + String.format("%-10s", state) + command;
+	}
+
+}
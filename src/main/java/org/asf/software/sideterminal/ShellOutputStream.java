@@ -1,27 +1,69 @@
 package org.asf.software.sideterminal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
+
+import org.asf.software.sideterminal.BytePipe.OverflowPolicy;
 
 public class ShellOutputStream extends OutputStream {
 
 	private OutputStream delegate;
-	private boolean closed = false;
-	private ArrayList<Integer> buffer = new ArrayList<Integer>();
+	private BytePipe buffer;
 
 	public ShellOutputStream() {
-		this(null);
+		this(BytePipe.UNBOUNDED);
+	}
+
+	public ShellOutputStream(int capacity) {
+		buffer = new BytePipe(capacity);
+	}
+
+	public ShellOutputStream(int capacity, OverflowPolicy policy) {
+		buffer = new BytePipe(capacity, policy);
 	}
 
 	public ShellOutputStream(OutputStream delegate) {
+		this();
 		this.delegate = delegate;
 	}
 
 	@Override
 	public void close() {
-		closed = true;
-		buffer.clear();
+		buffer.close();
+	}
+
+	BytePipe getPipe() {
+		return buffer;
+	}
+
+	/**
+	 * Checks if the stream has been closed (written data is discarded)
+	 */
+	public boolean isClosed() {
+		return delegate == null && buffer.isClosed();
+	}
+
+	/**
+	 * Retrieves the amount of buffered bytes
+	 */
+	public int available() {
+		return buffer.available();
+	}
+
+	/**
+	 * Retrieves the amount of output bytes discarded because the buffer was full
+	 */
+	public long getDroppedBytes() {
+		return buffer.getDroppedBytes();
+	}
+
+	/**
+	 * Retrieves the amount of output bytes spilled to disk because the buffer was
+	 * full
+	 */
+	public long getSpilledBytes() {
+		return buffer.getSpilledBytes();
 	}
 
 	@Override
@@ -32,7 +74,7 @@ public class ShellOutputStream extends OutputStream {
 			} catch (IOException e) {
 			}
 		else
-			buffer.add(i);
+			buffer.write(i);
 	}
 
 	public void write(byte i) {
@@ -42,12 +84,22 @@ public class ShellOutputStream extends OutputStream {
 			} catch (IOException e) {
 			}
 		else
-			buffer.add((int) i);
+			buffer.write(i);
 	}
 
 	public void write(byte[] i) {
-		for (byte b : i)
-			write(b);
+		write(i, 0, i.length);
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		if (delegate != null)
+			try {
+				delegate.write(data, offset, length);
+			} catch (IOException e) {
+			}
+		else
+			buffer.write(data, offset, length);
 	}
 
 	public void writeLine(String line) {
@@ -59,53 +111,32 @@ public class ShellOutputStream extends OutputStream {
 	}
 
 	public int read() throws IOException {
-		while (buffer.size() == 0) {
-			if (autoclose)
-				close();
-			if (closed)
-				return -1;
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				break;
-			}
-		}
-		if (closed)
-			return -1;
-		while (buffer.get(0) == null)
-			buffer.remove(0);
-		int i = buffer.get(0);
-		buffer.remove(0);
-		return i;
+		return buffer.read();
 	}
 
-	private boolean autoclose = false;
+	public int read(byte[] data, int offset, int length) throws IOException {
+		return buffer.read(data, offset, length);
+	}
 
 	public void autoClose() {
-		autoclose = true;
+		buffer.finish();
 	}
 
 	public byte[] readAllBytes() {
-		ArrayList<Byte> bytes = new ArrayList<Byte>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
 		while (true) {
-			int i;
+			int read;
 			try {
-				i = read();
+				read = read(chunk, 0, chunk.length);
 			} catch (IOException e) {
 				break;
 			}
-			if (i == -1)
-				break;
-
-			if (bytes.size() == Integer.MAX_VALUE)
+			if (read == -1)
 				break;
-			bytes.add((byte) i);
+			bytes.write(chunk, 0, read);
 		}
-		byte[] arr = new byte[bytes.size()];
-		int i = 0;
-		for (byte b : bytes)
-			arr[i++] = b;
-		return arr;
+		return bytes.toByteArray();
 	}
 
 }
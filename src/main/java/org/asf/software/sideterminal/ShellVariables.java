@@ -0,0 +1,148 @@
+package org.asf.software.sideterminal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ *
+ * Shell variable map - a HashMap synchronized on itself so pipeline stages and
+ * background jobs can share it, kept a HashMap so the public
+ * {@link SideTermShell#data} field keeps its type.<br/>
+ * <br/>
+ * Like {@link java.util.Collections#synchronizedMap(Map)}, code iterating the
+ * key, value or entry views must synchronize on the map.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+class ShellVariables extends HashMap<String, Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public synchronized int size() {
+		return super.size();
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return super.isEmpty();
+	}
+
+	@Override
+	public synchronized Object get(Object key) {
+		return super.get(key);
+	}
+
+	@Override
+	public synchronized Object getOrDefault(Object key, Object defaultValue) {
+		return super.getOrDefault(key, defaultValue);
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return super.containsKey(key);
+	}
+
+	@Override
+	public synchronized boolean containsValue(Object value) {
+		return super.containsValue(value);
+	}
+
+	@Override
+	public synchronized Object put(String key, Object value) {
+		return super.put(key, value);
+	}
+
+	@Override
+	public synchronized void putAll(Map<? extends String, ? extends Object> m) {
+		super.putAll(m);
+	}
+
+	@Override
+	public synchronized Object putIfAbsent(String key, Object value) {
+		return super.putIfAbsent(key, value);
+	}
+
+	@Override
+	public synchronized Object remove(Object key) {
+		return super.remove(key);
+	}
+
+	@Override
+	public synchronized boolean remove(Object key, Object value) {
+		return super.remove(key, value);
+	}
+
+	@Override
+	public synchronized Object replace(String key, Object value) {
+		return super.replace(key, value);
+	}
+
+	@Override
+	public synchronized boolean replace(String key, Object oldValue, Object newValue) {
+		return super.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public synchronized void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+		super.replaceAll(function);
+	}
+
+	@Override
+	public synchronized Object computeIfAbsent(String key, Function<? super String, ? extends Object> function) {
+		return super.computeIfAbsent(key, function);
+	}
+
+	@Override
+	public synchronized Object computeIfPresent(String key,
+			BiFunction<? super String, ? super Object, ? extends Object> function) {
+		return super.computeIfPresent(key, function);
+	}
+
+	@Override
+	public synchronized Object compute(String key,
+			BiFunction<? super String, ? super Object, ? extends Object> function) {
+		return super.compute(key, function);
+	}
+
+	@Override
+	public synchronized Object merge(String key, Object value,
+			BiFunction<? super Object, ? super Object, ? extends Object> function) {
+		return super.merge(key, value, function);
+	}
+
+	@Override
+	public synchronized void forEach(BiConsumer<? super String, ? super Object> action) {
+		super.forEach(action);
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+	}
+
+	@Override
+	public synchronized Object clone() {
+		return super.clone();
+	}
+
+	@Override
+	public synchronized boolean equals(Object o) {
+		return super.equals(o);
+	}
+
+	@Override
+	public synchronized int hashCode() {
+		return super.hashCode();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return super.toString();
+	}
+
+}
@@ -1,77 +1,736 @@
 package org.asf.software.sideterminal;
 
 import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
 
+/**
+ *
+ * SideTerminal client session - connects a shell to a non-blocking socket
+ * channel, all socket I/O is done by the server event loop.<br/>
+ * <br/>
+ * Sessions start by negotiating the wire protocol, output is held until the
+ * client has sent the framed protocol preamble or the negotiation timeout
+ * ('sideterminal.negotiate.timeout' system property, in milliseconds) has
+ * passed.<br/>
+ * <br/>
+ * Framed clients may request compression of the server output, which is
+ * deflated with sync flushes once the pending output has been drained. The
+ * 'sideterminal.compression' and 'sideterminal.compression.level' system
+ * properties disable compression or select the deflate level.<br/>
+ * <br/>
+ * Framed sessions are detached instead of destroyed when their connection
+ * drops, the shell keeps running and its output is kept in a scrollback ring
+ * ('sideterminal.scrollback' system property, in bytes). Clients reattach by
+ * session id and receive the scrollback in the handshake. Detached sessions are
+ * destroyed after 'sideterminal.detach.timeout' milliseconds (0 disables
+ * detaching). Clients whose input ends send an exit control frame, the shell
+ * then exits once the remaining input has been processed and the session is
+ * not kept.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
 public class SideTermClient {
 
-	private Socket client;
+	private static final int MAX_WRITES_PER_UPDATE = 16;
+	private static final long NEGOTIATE_TIMEOUT = Long.getLong("sideterminal.negotiate.timeout", 500);
+	private static final boolean COMPRESSION_ENABLED = !"false"
+			.equalsIgnoreCase(System.getProperty("sideterminal.compression"));
+	private static final int COMPRESSION_LEVEL = Integer.getInteger("sideterminal.compression.level",
+			Deflater.DEFAULT_COMPRESSION);
+	private static final int SCROLLBACK_SIZE = Integer.getInteger("sideterminal.scrollback", 65536);
+	private static final long DETACH_TIMEOUT = Long.getLong("sideterminal.detach.timeout", 600000);
+	private static final long FINISH_TIMEOUT = 5000;
 
-	private SideTermClient(Socket client) {
+	private static final int MODE_NEGOTIATING = 0;
+	private static final int MODE_RAW = 1;
+	private static final int MODE_FRAMED = 2;
+
+	private SideTermServer server;
+	private SocketChannel client;
+	private SelectionKey key;
+	private SideTermShell shell;
+	private int id;
+
+	private int mode = MODE_NEGOTIATING;
+	private long negotiateDeadline;
+	private boolean receivedInput = false;
+
+	private ByteBuffer input = ByteBuffer.allocate(16384);
+	private ByteBuffer output = ByteBuffer.allocate(65536);
+	private int stdinRemaining = 0;
+	private volatile boolean inputPending = false;
+
+	private ConcurrentLinkedQueue<byte[]> controlFrames = new ConcurrentLinkedQueue<byte[]>();
+	private volatile int lastStatus = 0;
+	private boolean closing = false;
+	private boolean exitRequested = false;
+	private long finishedAt = -1;
+
+	private ByteBuffer handshake;
+	private ByteBuffer replay;
+	private boolean compress = false;
+	private Deflater deflater;
+	private ByteBuffer plain = ByteBuffer.allocate(65536);
+	private int flushMode = Deflater.SYNC_FLUSH;
+	private boolean flushPending = false;
+	private boolean unflushed = false;
+
+	private byte[] scrollback = new byte[Math.max(0, SCROLLBACK_SIZE)];
+	private int scrollbackPosition = 0;
+	private boolean scrollbackFull = false;
+	private volatile long detachedAt = -1;
+
+	private AtomicBoolean scheduled = new AtomicBoolean();
+	private boolean closed = false;
+
+	SideTermClient(SideTermServer server, SocketChannel client, int id) {
+		this.server = server;
 		this.client = client;
+		this.id = id;
+		output.limit(0);
+		negotiateDeadline = System.currentTimeMillis() + NEGOTIATE_TIMEOUT;
 	}
 
-	public static void start(Socket sock) {
-		new SideTermClient(sock).startThread();
+	/**
+	 * Retrieves the session id
+	 */
+	public int getId() {
+		return id;
 	}
 
 	public void write(String message) {
-		try {
-			client.getOutputStream().write(message.getBytes());
-		} catch (IOException e) {
-		}
+		shell.systemOutput.write(message);
 	}
 
 	public void writeLine(String message) {
 		write(message + "\n");
 	}
 
-	private void startThread() {
-		SideTermShell shell = SideTermMain.getNewShell();
+	void register(Selector selector) throws IOException {
+		key = client.register(selector, SelectionKey.OP_READ, this);
+	}
+
+	private void startSession() {
+		if (shell != null || closed)
+			return;
+		if (!server.admitSession(this)) {
+			refuse("Session limit reached, SideTerminal accepts at most " + server.getMaxSessions()
+					+ " concurrent sessions.\n");
+			return;
+		}
+		shell = SideTermMain.getNewShell();
+		shell.systemOutput.getPipe().setListeners(this::schedule, null);
+		shell.systemError.getPipe().setListeners(this::schedule, null);
+		shell.systemInput.getPipe().setListeners(null, () -> {
+			if (inputPending)
+				schedule();
+		});
+		shell.statusListener = status -> {
+			lastStatus = status;
+			if (mode == MODE_FRAMED && !isDetached()) {
+				controlFrames.add(SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL,
+						SideTermProtocol.control(SideTermProtocol.CONTROL_STATUS, status)));
+				schedule();
+			}
+		};
 		writeLine("Starting SideTerminal client connection...");
-		Thread clientThread = new Thread(() -> {
-			while (true) {
-				try {
-					int i = client.getInputStream().read();
-					if (i == -1) {
-						shell.destroy();
-						break;
-					}
-					if (i == '\r')
-						continue;
-					shell.systemInput.write(i);
-				} catch (IOException ex) {
-					shell.destroy();
-					break;
+		shell.start();
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true))
+			server.schedule(this);
+	}
+
+	/**
+	 * Reports an error to the client and closes the connection without starting
+	 * a shell (event loop only)
+	 */
+	private void refuse(String message) {
+		if (mode != MODE_FRAMED) {
+			try {
+				client.write(ByteBuffer.wrap(message.getBytes()));
+			} catch (IOException e) {
+			}
+			destroy();
+			return;
+		}
+
+		// Close once the output is flushed
+		handshake(0, compress, new byte[0]);
+		controlFrames.add(SideTermProtocol.frame(SideTermProtocol.CHANNEL_STDERR, message.getBytes()));
+		controlFrames.add(SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL,
+				SideTermProtocol.control(SideTermProtocol.CONTROL_EXIT, 1)));
+		closing = true;
+		schedule();
+	}
+
+	/**
+	 * Checks if this session has started its shell
+	 */
+	boolean isStarted() {
+		return shell != null;
+	}
+
+	/**
+	 * Checks if this session has sent its final output and waits for the client
+	 * to close the connection
+	 */
+	boolean isFinished() {
+		return finishedAt != -1;
+	}
+
+	/**
+	 * Retrieves the time this session was detached (-1 if attached)
+	 */
+	long getDetachTime() {
+		return detachedAt;
+	}
+
+	/**
+	 * Checks if this session is still negotiating its protocol
+	 */
+	boolean isNegotiating() {
+		return mode == MODE_NEGOTIATING;
+	}
+
+	/**
+	 * Checks if this session is detached from its connection
+	 */
+	boolean isDetached() {
+		return detachedAt != -1;
+	}
+
+	/**
+	 * Falls back to the raw protocol once the negotiation timeout has passed and
+	 * destroys expired detached sessions (event loop only)
+	 */
+	void tick(long time) {
+		if (mode == MODE_NEGOTIATING && time >= negotiateDeadline && input.position() == 0) {
+			mode = MODE_RAW;
+			startSession();
+			update();
+		} else if (isDetached() && time - detachedAt >= DETACH_TIMEOUT) {
+			destroy();
+		} else if (finishedAt != -1 && time - finishedAt >= FINISH_TIMEOUT) {
+			destroy();
+		}
+	}
+
+	/**
+	 * Reads available socket data into the shell input (event loop only)
+	 */
+	void handleRead() {
+		if (closed || inputPending)
+			return;
+		try {
+			int read = client.read(input);
+			if (read == -1) {
+				close();
+				return;
+			}
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		if (finishedAt != -1) {
+			input.clear();
+			return;
+		}
+		processInput();
+	}
+
+	/**
+	 * Transfers pending input and output (event loop only)
+	 */
+	void update() {
+		scheduled.set(false);
+		if (closed)
+			return;
+		if (isDetached()) {
+			drainDetached();
+			return;
+		}
+		if (inputPending)
+			processInput();
+		if (!closed && client != null && finishedAt == -1)
+			flushOutput();
+	}
+
+	private void processInput() {
+		input.flip();
+		try {
+			if (mode == MODE_RAW && !receivedInput && input.hasRemaining()
+					&& input.get(input.position()) == SideTermProtocol.MAGIC[0])
+				mode = MODE_NEGOTIATING;
+			if (mode == MODE_NEGOTIATING)
+				negotiate();
+			if (closed)
+				return;
+			if (mode == MODE_RAW)
+				processRaw();
+			else if (mode == MODE_FRAMED && shell != null)
+				processFrames();
+			else if (mode == MODE_FRAMED)
+				input.position(input.limit()); // Refused, discard the input until the output is flushed
+		} catch (IOException e) {
+			close();
+			return;
+		} finally {
+			input.compact();
+		}
+
+		if (closed || client == null)
+			return;
+		if (inputPending)
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+		else
+			key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+	}
+
+	private void negotiate() throws IOException {
+		byte[] magic = SideTermProtocol.MAGIC;
+		int start = input.position();
+		int count = Math.min(input.remaining(), magic.length);
+		for (int i = 0; i < count; i++) {
+			if (input.get(start + i) != magic[i]) {
+				mode = MODE_RAW;
+				startSession();
+				schedule();
+				return;
+			}
+		}
+		if (input.remaining() < magic.length + SideTermProtocol.HEADER_LENGTH)
+			return;
+
+		int channel = input.get(start + magic.length) & 0xff;
+		int length = input.getInt(start + magic.length + 1);
+		if (channel != SideTermProtocol.CHANNEL_CONTROL || length < 1
+				|| length > SideTermProtocol.MAX_CONTROL_PAYLOAD)
+			throw new IOException("Invalid handshake");
+		if (input.remaining() < magic.length + SideTermProtocol.HEADER_LENGTH + length)
+			return;
+
+		input.position(start + magic.length + SideTermProtocol.HEADER_LENGTH);
+		byte[] payload = new byte[length];
+		input.get(payload);
+		SideTermProtocol.Frame hello = new SideTermProtocol.Frame(channel, payload);
+		if (hello.controlType() != SideTermProtocol.CONTROL_HELLO)
+			throw new IOException("Invalid handshake");
+
+		boolean compress = (hello.controlValue(1) & SideTermProtocol.FLAG_COMPRESSION) != 0 && COMPRESSION_ENABLED;
+		int attach = hello.controlValue(2);
+		mode = MODE_FRAMED;
+		receivedInput = true;
+
+		if (attach != 0) {
+			SideTermClient target = server.getDetachedSession(attach);
+			if (target != null) {
+				target.resume(this, compress);
+				return;
+			}
+
+			refuse("Session " + attach + " is not available.\n");
+			return;
+		}
+		handshake(id, compress, new byte[0]);
+		startSession();
+		schedule();
+	}
+
+	private void handshake(int session, boolean compress, byte[] history) {
+		int flags = compress ? SideTermProtocol.FLAG_COMPRESSION : 0;
+		byte[] reply = SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL, SideTermProtocol
+				.control(SideTermProtocol.CONTROL_HELLO, SideTermProtocol.VERSION, flags, session, history.length));
+		handshake = ByteBuffer
+				.allocate(SideTermProtocol.MAGIC.length + reply.length + (compress ? 0 : history.length));
+		handshake.put(SideTermProtocol.MAGIC);
+		handshake.put(reply);
+
+		// Compressed sessions replay the scrollback as the start of the deflate stream
+		if (compress)
+			replay = history.length == 0 ? null : ByteBuffer.wrap(history);
+		else
+			handshake.put(history);
+		handshake.flip();
+		this.compress = compress;
+	}
+
+	/**
+	 * Takes over the connection of a newly negotiated session and sends the
+	 * scrollback (event loop only)
+	 */
+	private void resume(SideTermClient connection, boolean compress) {
+		client = connection.client;
+		key = connection.key;
+		key.attach(this);
+		connection.closed = true;
+		server.removeSession(connection);
+		if (connection.shell != null)
+			SideTermThreads.start(connection.shell::destroy, "SideTerminal Session Cleanup");
+
+		input.clear();
+		input.put(connection.input);
+		output.clear();
+		output.limit(0);
+		controlFrames.clear();
+		stdinRemaining = 0;
+		inputPending = false;
+		receivedInput = true;
+		flushPending = false;
+		unflushed = false;
+		detachedAt = -1;
+		handshake(id, compress, scrollback());
+
+		processInput();
+		schedule();
+	}
+
+	private void processRaw() {
+		byte[] buffer = input.array();
+		int start = input.position();
+		int length = start;
+		boolean interrupt = false;
+		for (int i = start; i < input.limit(); i++) {
+			if (buffer[i] == 0x03)
+				interrupt = true;
+			else if (buffer[i] != '\r')
+				buffer[length++] = buffer[i];
+		}
+		input.limit(length);
+		if (length != start)
+			receivedInput = true;
+		if (interrupt)
+			SideTermThreads.start(shell::interrupt, "SideTerminal Interrupt");
+
+		int offered = shell.systemInput.getPipe().offer(buffer, start, length - start);
+		input.position(start + offered);
+		inputPending = input.hasRemaining();
+	}
+
+	private void processFrames() throws IOException {
+		inputPending = false;
+		while (true) {
+			if (stdinRemaining > 0) {
+				int count = Math.min(stdinRemaining, input.remaining());
+				if (count == 0)
+					return;
+				int offered = shell.systemInput.getPipe().offer(input.array(), input.position(), count);
+				input.position(input.position() + offered);
+				stdinRemaining -= offered;
+				if (offered < count) {
+					inputPending = true;
+					return;
 				}
+				continue;
 			}
-		}, "SideTerminal Client " + client);
-		clientThread.setDaemon(true);
-		clientThread.start();
-		Thread clientOutputThread = new Thread(() -> {
-			while (true) {
-				try {
-					int i = shell.systemOutput.read();
-					if (i == -1) {
-						shell.destroy();
-						client.close();
-						break;
-					}
-					client.getOutputStream().write(i);
-				} catch (IOException ex) {
-					shell.destroy();
-					try {
-						client.close();
-					} catch (IOException e) {
 
+			if (input.remaining() < SideTermProtocol.HEADER_LENGTH)
+				return;
+			int start = input.position();
+			int channel = input.get(start) & 0xff;
+			int length = input.getInt(start + 1);
+			if (length < 0 || length > SideTermProtocol.MAX_PAYLOAD)
+				throw new IOException("Invalid frame length");
+
+			if (channel == SideTermProtocol.CHANNEL_STDIN) {
+				input.position(start + SideTermProtocol.HEADER_LENGTH);
+				stdinRemaining = length;
+				continue;
+			}
+
+			if (length > SideTermProtocol.MAX_CONTROL_PAYLOAD)
+				throw new IOException("Control frame too large");
+			if (input.remaining() < SideTermProtocol.HEADER_LENGTH + length)
+				return;
+			input.position(start + SideTermProtocol.HEADER_LENGTH);
+			byte[] payload = new byte[length];
+			input.get(payload);
+			handleFrame(new SideTermProtocol.Frame(channel, payload));
+		}
+	}
+
+	private void handleFrame(SideTermProtocol.Frame frame) {
+		if (frame.channel == SideTermProtocol.CHANNEL_HEARTBEAT) {
+			controlFrames.add(SideTermProtocol.frame(SideTermProtocol.CHANNEL_HEARTBEAT, new byte[0]));
+			schedule();
+		} else if (frame.channel == SideTermProtocol.CHANNEL_CONTROL) {
+			switch (frame.controlType()) {
+			case SideTermProtocol.CONTROL_RESIZE:
+				shell.setTerminalSize(frame.controlValue(0), frame.controlValue(1));
+				break;
+			case SideTermProtocol.CONTROL_INTERRUPT:
+				SideTermThreads.start(shell::interrupt, "SideTerminal Interrupt");
+				break;
+			case SideTermProtocol.CONTROL_EXIT:
+				// The client input has ended, let the shell exit instead of detaching
+				exitRequested = true;
+				shell.systemInput.autoClose();
+				break;
+			}
+		}
+	}
+
+	private void flushOutput() {
+		if (mode == MODE_NEGOTIATING)
+			return;
+		try {
+			if (handshake != null) {
+				client.write(handshake);
+				if (handshake.hasRemaining()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+					return;
+				}
+				handshake = null;
+				if (compress)
+					deflater = new Deflater(COMPRESSION_LEVEL);
+			}
+
+			for (int i = 0; i < MAX_WRITES_PER_UPDATE; i++) {
+				if (!output.hasRemaining()) {
+					output.clear();
+					if (deflater != null)
+						fillCompressed();
+					else if (mode == MODE_FRAMED)
+						fillFramed(output);
+					else
+						fillRaw();
+					output.flip();
+					if (closed)
+						return;
+
+					if (!output.hasRemaining()) {
+						if (closing)
+							finish();
+						else
+							key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+						return;
 					}
-					break;
+				}
+
+				client.write(output);
+				if (output.hasRemaining()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+					return;
 				}
 			}
-		}, "SideTerminal Client Output " + client);
-		clientOutputThread.setDaemon(true);
-		clientOutputThread.start();
-		shell.start();
+			schedule();
+		} catch (IOException e) {
+			close();
+		}
+	}
+
+	private void fillRaw() {
+		int read = shell.systemOutput.getPipe().poll(output.array(), 0, output.capacity());
+		if (read == -1) {
+			close();
+			return;
+		}
+		if (read == 0)
+			read = Math.max(0, shell.systemError.getPipe().poll(output.array(), 0, output.capacity()));
+		record(output.array(), 0, read);
+		output.position(read);
+	}
+
+	private void fillCompressed() {
+		while (output.hasRemaining()) {
+			if (deflater.needsInput() && !flushPending) {
+				plain.clear();
+				if (replay != null) {
+					int count = Math.min(replay.remaining(), plain.remaining());
+					plain.put(replay.array(), replay.position(), count);
+					replay.position(replay.position() + count);
+					if (!replay.hasRemaining())
+						replay = null;
+				}
+				if (replay == null)
+					fillFramed(plain);
+				if (plain.position() == 0) {
+					if (!unflushed)
+						return;
+					deflater.setInput(plain.array(), 0, 0);
+					flushMode = Deflater.SYNC_FLUSH;
+				} else {
+					deflater.setInput(plain.array(), 0, plain.position());
+
+					// Keep compressing while the buffers are being refilled, flush once drained
+					flushMode = plain.hasRemaining() ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+				}
+				flushPending = flushMode == Deflater.SYNC_FLUSH;
+				unflushed = !flushPending;
+			}
+
+			int space = output.remaining();
+			int count = deflater.deflate(output.array(), output.position(), space, flushMode);
+			output.position(output.position() + count);
+			if (flushPending && count < space)
+				flushPending = false;
+		}
+	}
+
+	private void fillFramed(ByteBuffer target) {
+		byte[] frame;
+		while ((frame = controlFrames.peek()) != null && target.remaining() >= frame.length)
+			target.put(controlFrames.poll());
+
+		while (!closing && target.remaining() > SideTermProtocol.HEADER_LENGTH) {
+			int read = pollFrame(target, SideTermProtocol.CHANNEL_STDOUT, shell.systemOutput.getPipe());
+			if (read == -1) {
+				closing = true;
+				byte[] exit = SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL,
+						SideTermProtocol.control(SideTermProtocol.CONTROL_EXIT, lastStatus));
+				if (target.remaining() >= exit.length)
+					target.put(exit);
+				else
+					controlFrames.add(exit);
+				break;
+			}
+			if (target.remaining() > SideTermProtocol.HEADER_LENGTH)
+				read += Math.max(0, pollFrame(target, SideTermProtocol.CHANNEL_STDERR, shell.systemError.getPipe()));
+			if (read == 0)
+				break;
+		}
+	}
+
+	private int pollFrame(ByteBuffer target, int channel, BytePipe pipe) {
+		int start = target.position();
+		int read = pipe.poll(target.array(), start + SideTermProtocol.HEADER_LENGTH,
+				target.remaining() - SideTermProtocol.HEADER_LENGTH);
+		if (read <= 0)
+			return read;
+		record(target.array(), start + SideTermProtocol.HEADER_LENGTH, read);
+		target.put((byte) channel);
+		target.putInt(read);
+		target.position(start + SideTermProtocol.HEADER_LENGTH + read);
+		return read;
+	}
+
+	private void drainDetached() {
+		byte[] buffer = output.array();
+		for (int i = 0; i < MAX_WRITES_PER_UPDATE; i++) {
+			int read = shell.systemOutput.getPipe().poll(buffer, 0, buffer.length);
+			if (read == -1) {
+				destroy();
+				return;
+			}
+			record(buffer, 0, read);
+			int err = Math.max(0, shell.systemError.getPipe().poll(buffer, 0, buffer.length));
+			record(buffer, 0, err);
+			if (read == 0 && err == 0)
+				return;
+		}
+		schedule();
+	}
+
+	/**
+	 * Appends output to the scrollback ring
+	 */
+	private void record(byte[] data, int offset, int length) {
+		int capacity = scrollback.length;
+		if (capacity == 0 || length <= 0)
+			return;
+		if (length >= capacity) {
+			System.arraycopy(data, offset + length - capacity, scrollback, 0, capacity);
+			scrollbackPosition = 0;
+			scrollbackFull = true;
+			return;
+		}
+
+		int first = Math.min(length, capacity - scrollbackPosition);
+		System.arraycopy(data, offset, scrollback, scrollbackPosition, first);
+		System.arraycopy(data, offset + first, scrollback, 0, length - first);
+		scrollbackPosition += length;
+		if (scrollbackPosition >= capacity) {
+			scrollbackPosition -= capacity;
+			scrollbackFull = true;
+		}
+	}
+
+	/**
+	 * Retrieves the scrollback ring contents in order
+	 */
+	private byte[] scrollback() {
+		if (!scrollbackFull)
+			return Arrays.copyOf(scrollback, scrollbackPosition);
+		byte[] history = new byte[scrollback.length];
+		int tail = scrollback.length - scrollbackPosition;
+		System.arraycopy(scrollback, scrollbackPosition, history, 0, tail);
+		System.arraycopy(scrollback, 0, history, tail, scrollbackPosition);
+		return history;
+	}
+
+	/**
+	 * Ends the output once the final frames are flushed, the connection is closed
+	 * after the client has closed its side so unread input does not reset it
+	 * (event loop only)
+	 */
+	private void finish() {
+		try {
+			client.shutdownOutput();
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		finishedAt = System.currentTimeMillis();
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	private void close() {
+		if (closed)
+			return;
+		if (mode == MODE_FRAMED && shell != null && !closing && !exitRequested && DETACH_TIMEOUT > 0) {
+			detach();
+			return;
+		}
+		destroy();
+	}
+
+	private void detach() {
+		disconnect();
+		detachedAt = System.currentTimeMillis();
+		input.clear();
+		output.clear();
+		output.limit(0);
+		controlFrames.clear();
+		handshake = null;
+		replay = null;
+		stdinRemaining = 0;
+		inputPending = false;
+		schedule();
+	}
+
+	private void disconnect() {
+		if (client == null)
+			return;
+		key.cancel();
+		try {
+			client.close();
+		} catch (IOException e) {
+		}
+		client = null;
+		key = null;
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+	}
+
+	void destroy() {
+		if (closed)
+			return;
+		closed = true;
+		disconnect();
+		server.removeSession(this);
+		if (shell != null)
+			SideTermThreads.start(shell::destroy, "SideTerminal Session Cleanup");
 	}
 
 }
@@ -11,6 +11,7 @@ public abstract class SideTermCommand {
 	protected ShellInputStream Input;
 	protected ShellOutputStream Output;
 	private SideTermShell shell;
+	private Integer exitStatus;
 
 	protected abstract SideTermCommand newInstance();
 
@@ -20,6 +21,20 @@ public abstract class SideTermCommand {
 		this.shell = shell;
 	}
 
+	/**
+	 * Assigns the exit status of the command, overrides the status of the run
+	 * result (no usage message is shown if set)
+	 * 
+	 * @param status Exit status
+	 */
+	protected void setExitStatus(int status) {
+		exitStatus = status;
+	}
+
+	Integer getExitStatus() {
+		return exitStatus;
+	}
+
 	/**
 	 * Defines whether or not the id is a regex string
 	 */
@@ -0,0 +1,314 @@
+package org.asf.software.sideterminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ *
+ * Local line editor for the --client mode - puts the terminal in
+ * non-canonical mode and edits input lines locally so only complete lines are
+ * sent to the server.<br/>
+ * <br/>
+ * Supports cursor movement (arrows, home/end, ctrl+a/e), backspace/delete,
+ * ctrl+u/k, history (up/down) and ctrl+c to interrupt the running command.
+ * The history size is configured by the 'sideterminal.history' system property
+ * (defaults to 500 entries).
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SideTermLineEditor {
+
+	private static final int HISTORY_SIZE = Integer.getInteger("sideterminal.history", 500);
+
+	/**
+	 *
+	 * Line editor callbacks
+	 *
+	 */
+	public static interface LineHandler {
+
+		/**
+		 * Called when a line is completed (includes the line feed)
+		 */
+		public void line(byte[] line) throws IOException;
+
+		/**
+		 * Called when ctrl+c is pressed
+		 */
+		public void interrupt() throws IOException;
+
+	}
+
+	private OutputStream terminal;
+	private LineHandler handler;
+	private String savedMode;
+
+	private StringBuilder line = new StringBuilder();
+	private int cursor = 0;
+	private ArrayList<String> history = new ArrayList<String>();
+	private int historyIndex = 0;
+	private String pendingLine = "";
+
+	private SideTermLineEditor(OutputStream terminal, LineHandler handler, String savedMode) {
+		this.terminal = terminal;
+		this.handler = handler;
+		this.savedMode = savedMode;
+	}
+
+	/**
+	 * Creates a line editor for the local terminal
+	 *
+	 * @param terminal Terminal output stream
+	 * @param handler  Line callbacks
+	 * @return SideTermLineEditor instance or null if stdin is not a terminal
+	 */
+	public static SideTermLineEditor create(OutputStream terminal, LineHandler handler) {
+		if (System.console() == null || !new File("/dev/tty").exists())
+			return null;
+		String mode = stty("-g");
+		if (mode == null || stty("-icanon", "-echo", "-isig", "min", "1") == null)
+			return null;
+
+		SideTermLineEditor editor = new SideTermLineEditor(terminal, handler, mode.trim());
+		Runtime.getRuntime().addShutdownHook(new Thread(editor::restore, "SideTerminal Terminal Restore"));
+		return editor;
+	}
+
+	private static String stty(String... args) {
+		try {
+			String[] command = new String[args.length + 1];
+			command[0] = "stty";
+			System.arraycopy(args, 0, command, 1, args.length);
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectInput(new File("/dev/tty"));
+			builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+			Process proc = builder.start();
+			String output = new String(proc.getInputStream().readAllBytes());
+			if (proc.waitFor() != 0)
+				return null;
+			return output;
+		} catch (IOException | InterruptedException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Restores the original terminal mode
+	 */
+	public synchronized void restore() {
+		if (savedMode == null)
+			return;
+		stty(savedMode);
+		savedMode = null;
+	}
+
+	/**
+	 * Reads and edits input until the end of the stream or ctrl+d on an empty
+	 * line
+	 *
+	 * @param input Terminal input stream
+	 * @throws IOException If reading or sending fails
+	 */
+	public void run(InputStream input) throws IOException {
+		Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+		while (true) {
+			int ch = reader.read();
+			if (ch == -1)
+				break;
+
+			synchronized (this) {
+				switch (ch) {
+				case '\r':
+				case '\n':
+					submit();
+					break;
+				case 0x03:
+					line.setLength(0);
+					cursor = 0;
+					historyIndex = history.size();
+					print("^C\n");
+					handler.interrupt();
+					break;
+				case 0x04:
+					if (line.length() == 0) {
+						print("\n");
+						return;
+					}
+					if (cursor < line.length()) {
+						line.deleteCharAt(cursor);
+						redraw(cursor);
+					}
+					break;
+				case 0x01:
+					move(0);
+					break;
+				case 0x05:
+					move(line.length());
+					break;
+				case 0x7f:
+				case 0x08:
+					if (cursor > 0 && cursor == line.length()) {
+						line.setLength(--cursor);
+						print("\b\033[K");
+					} else if (cursor > 0) {
+						line.deleteCharAt(cursor - 1);
+						redraw(cursor - 1);
+					}
+					break;
+				case 0x15:
+					line.delete(0, cursor);
+					redraw(0);
+					break;
+				case 0x0b:
+					line.setLength(cursor);
+					redraw(cursor);
+					break;
+				case 0x1b:
+					escape(reader);
+					break;
+				default:
+					if (ch >= 0x20 && cursor == line.length()) {
+						line.append((char) ch);
+						cursor++;
+						print(String.valueOf((char) ch));
+					} else if (ch >= 0x20) {
+						line.insert(cursor, (char) ch);
+						redraw(cursor + 1);
+					}
+					break;
+				}
+				terminal.flush();
+			}
+		}
+	}
+
+	private void escape(Reader reader) throws IOException {
+		int type = reader.read();
+		if (type != '[' && type != 'O')
+			return;
+
+		int ch = reader.read();
+		int param = 0;
+		while (ch >= '0' && ch <= '9') {
+			param = param * 10 + (ch - '0');
+			ch = reader.read();
+		}
+		switch (ch) {
+		case 'A':
+			recall(historyIndex - 1);
+			break;
+		case 'B':
+			recall(historyIndex + 1);
+			break;
+		case 'C':
+			move(Math.min(line.length(), cursor + 1));
+			break;
+		case 'D':
+			move(Math.max(0, cursor - 1));
+			break;
+		case 'H':
+			move(0);
+			break;
+		case 'F':
+			move(line.length());
+			break;
+		case '~':
+			if (param == 1 || param == 7)
+				move(0);
+			else if (param == 4 || param == 8)
+				move(line.length());
+			else if (param == 3 && cursor < line.length()) {
+				line.deleteCharAt(cursor);
+				redraw(cursor);
+			}
+			break;
+		}
+	}
+
+	private void submit() throws IOException {
+		String text = line.toString();
+		if (!text.isEmpty() && (history.isEmpty() || !history.get(history.size() - 1).equals(text))) {
+			history.add(text);
+			if (history.size() > HISTORY_SIZE)
+				history.remove(0);
+		}
+		historyIndex = history.size();
+		pendingLine = "";
+		line.setLength(0);
+		cursor = 0;
+		print("\n");
+		terminal.flush();
+		handler.line((text + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void recall(int index) throws IOException {
+		if (index < 0 || index > history.size() || index == historyIndex)
+			return;
+		if (historyIndex == history.size())
+			pendingLine = line.toString();
+		historyIndex = index;
+		line.setLength(0);
+		line.append(index == history.size() ? pendingLine : history.get(index));
+		redraw(line.length());
+	}
+
+	private void move(int position) throws IOException {
+		if (position < cursor)
+			print("\033[" + (cursor - position) + "D");
+		else if (position > cursor)
+			print(line.substring(cursor, position));
+		cursor = position;
+	}
+
+	/**
+	 * Rewrites the edited line and places the cursor
+	 */
+	private void redraw(int position) throws IOException {
+		StringBuilder text = new StringBuilder();
+		if (cursor > 0)
+			text.append("\033[").append(cursor).append("D");
+		text.append(line).append("\033[K");
+		if (line.length() > position)
+			text.append("\033[").append(line.length() - position).append("D");
+		cursor = position;
+		print(text.toString());
+	}
+
+	private void print(String text) throws IOException {
+		terminal.write(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes remote output without corrupting the line that is being edited
+	 *
+	 * @param output Output stream to write to
+	 * @param data   Output bytes
+	 * @param offset Array offset
+	 * @param length Amount of bytes
+	 * @throws IOException If writing fails
+	 */
+	public synchronized void write(OutputStream output, byte[] data, int offset, int length) throws IOException {
+		if (line.length() == 0) {
+			output.write(data, offset, length);
+			output.flush();
+			return;
+		}
+
+		int position = cursor;
+		print((cursor > 0 ? "\033[" + cursor + "D" : "") + "\033[K");
+		terminal.flush();
+		output.write(data, offset, length);
+		output.flush();
+		cursor = 0;
+		redraw(position);
+		terminal.flush();
+	}
+
+}
@@ -5,6 +5,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 /**
@@ -28,29 +30,23 @@ public class SideTermMain {
 			IllegalAccessException, IllegalArgumentException, InvocationTargetException, UnknownHostException,
 			IOException, InterruptedException {
 		if (args[0].equals("--client")) {
-			Socket sock = new Socket("localhost", Integer.valueOf(args[1]));
-			new Thread(() -> {
-				while (true) {
-					int i;
-					try {
-						i = sock.getInputStream().read();
-					} catch (IOException e) {
-						break;
-					}
-					if (i == -1)
-						break;
-					System.out.print((char) i);
-				}
-			}).start();
-			while (true) {
-				int i = System.in.read();
-				if (i == -1)
-					break;
-				sock.getOutputStream().write(i);
-				sock.getOutputStream().flush();
+			boolean framed = !Arrays.asList(args).contains("--raw");
+			boolean compress = Arrays.asList(args).contains("--compress");
+			SideTermRemote remote;
+			if (args[1].startsWith("unix:")) {
+				String target = args[1].substring("unix:".length());
+				Path path = target.matches("^[0-9]+$") ? SideTermUnixSockets.getSocketPath(Long.parseLong(target))
+						: Paths.get(target);
+				remote = new SideTermRemote(SideTermUnixSockets.connect(path), framed, compress);
+			} else {
+				Socket sock = new Socket("localhost", Integer.valueOf(args[1]));
+				remote = new SideTermRemote(sock, framed, compress);
 			}
-			sock.close();
-			System.exit(0);
+			int attach = Arrays.asList(args).indexOf("--attach");
+			if (attach != -1)
+				remote.setAttach(Integer.parseInt(args[attach + 1]));
+			int status = remote.run();
+			System.exit(status);
 		}
 		if (System.getProperty("sideterminal.shell") != null)
 			shellClass = (Class<? extends SideTermShell>) Class.forName(System.getProperty("sideterminal.shell"));
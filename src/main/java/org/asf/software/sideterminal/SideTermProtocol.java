@@ -0,0 +1,195 @@
+package org.asf.software.sideterminal;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * SideTerminal framed protocol - optional multiplexed wire format between the
+ * --client mode and the SideTerminal server.<br/>
+ * <br/>
+ * The client starts the connection by sending {@link #MAGIC} followed by a
+ * control hello frame, the server answers with the same magic and its own
+ * hello frame. Frames consist of a channel byte, a 32-bit big-endian payload
+ * length and the payload. Connections that do not start with the magic use the
+ * raw unframed stream. If both sides agree on {@link #FLAG_COMPRESSION}, all
+ * server output following the hello frame, starting with the scrollback, is a
+ * sync-flushed deflate stream.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SideTermProtocol {
+
+	/**
+	 * Connection preamble for the framed protocol
+	 */
+	public static final byte[] MAGIC = { 0, 'S', 'T', 'F', 'R', 'A', 'M', 'E' };
+
+	/**
+	 * Protocol version
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Frame header length (channel and payload length)
+	 */
+	public static final int HEADER_LENGTH = 5;
+
+	/**
+	 * Maximal payload length of data frames
+	 */
+	public static final int MAX_PAYLOAD = 1024 * 1024;
+
+	/**
+	 * Maximal payload length of control frames
+	 */
+	public static final int MAX_CONTROL_PAYLOAD = 4096;
+
+	/**
+	 * Hello flag: deflate-compressed server output after the handshake
+	 */
+	public static final int FLAG_COMPRESSION = 1;
+
+	public static final int CHANNEL_STDIN = 0;
+	public static final int CHANNEL_STDOUT = 1;
+	public static final int CHANNEL_STDERR = 2;
+	public static final int CHANNEL_CONTROL = 3;
+	public static final int CHANNEL_HEARTBEAT = 4;
+
+	/**
+	 * Handshake: version, flags, session id, scrollback length<br/>
+	 * <br/>
+	 * Clients send the id of a detached session to reattach (0 for a new
+	 * session), the server answers with the session id and the length of the
+	 * scrollback that directly follows its hello frame (uncompressed length at
+	 * the start of the deflate stream if compression is enabled).
+	 */
+	public static final int CONTROL_HELLO = 1;
+
+	/**
+	 * Terminal resize: columns, rows
+	 */
+	public static final int CONTROL_RESIZE = 2;
+
+	/**
+	 * Interrupts the running command
+	 */
+	public static final int CONTROL_INTERRUPT = 3;
+
+	/**
+	 * Exit status of the last processed command line: status
+	 */
+	public static final int CONTROL_STATUS = 4;
+
+	/**
+	 * Shell has exited: status<br/>
+	 * <br/>
+	 * Clients send this frame when their input ends, the server then ends the
+	 * session once the remaining input has been processed instead of detaching
+	 * it.
+	 */
+	public static final int CONTROL_EXIT = 5;
+
+	/**
+	 *
+	 * Decoded protocol frame
+	 *
+	 */
+	public static class Frame {
+		public final int channel;
+		public final byte[] payload;
+
+		public Frame(int channel, byte[] payload) {
+			this.channel = channel;
+			this.payload = payload;
+		}
+
+		/**
+		 * Retrieves the control type of this frame
+		 */
+		public int controlType() {
+			return payload.length == 0 ? -1 : payload[0] & 0xff;
+		}
+
+		/**
+		 * Retrieves an integer value of this control frame
+		 *
+		 * @param index Value index
+		 * @return Value or 0 if not present
+		 */
+		public int controlValue(int index) {
+			int offset = 1 + index * 4;
+			if (payload.length < offset + 4)
+				return 0;
+			return ByteBuffer.wrap(payload, offset, 4).getInt();
+		}
+	}
+
+	/**
+	 * Encodes a control frame payload
+	 *
+	 * @param type   Control type
+	 * @param values Integer values
+	 * @return Payload bytes
+	 */
+	public static byte[] control(int type, int... values) {
+		ByteBuffer buffer = ByteBuffer.allocate(1 + values.length * 4);
+		buffer.put((byte) type);
+		for (int value : values)
+			buffer.putInt(value);
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes a complete frame
+	 *
+	 * @param channel Frame channel
+	 * @param payload Payload bytes
+	 * @return Frame bytes
+	 */
+	public static byte[] frame(int channel, byte[] payload) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+		buffer.put((byte) channel);
+		buffer.putInt(payload.length);
+		buffer.put(payload);
+		return buffer.array();
+	}
+
+	/**
+	 * Writes a frame to the given stream (does not flush)
+	 *
+	 * @param output  Output stream
+	 * @param channel Frame channel
+	 * @param payload Payload bytes
+	 * @param offset  Payload offset
+	 * @param length  Payload length
+	 * @throws IOException If writing fails
+	 */
+	public static void writeFrame(OutputStream output, int channel, byte[] payload, int offset, int length)
+			throws IOException {
+		output.write(new byte[] { (byte) channel, (byte) (length >>> 24), (byte) (length >>> 16),
+				(byte) (length >>> 8), (byte) length });
+		output.write(payload, offset, length);
+	}
+
+	/**
+	 * Reads a frame from the given stream
+	 *
+	 * @param input Input stream
+	 * @return Frame instance
+	 * @throws IOException If reading fails or the frame is invalid
+	 */
+	public static Frame readFrame(DataInputStream input) throws IOException {
+		int channel = input.readUnsignedByte();
+		int length = input.readInt();
+		if (length < 0 || length > MAX_PAYLOAD)
+			throw new IOException("Invalid frame length: " + length);
+		byte[] payload = new byte[length];
+		input.readFully(payload);
+		return new Frame(channel, payload);
+	}
+
+}
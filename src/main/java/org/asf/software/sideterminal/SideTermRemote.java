@@ -0,0 +1,369 @@
+package org.asf.software.sideterminal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ *
+ * SideTerminal remote client (--client mode) - connects the local terminal to a
+ * SideTerminal server.<br/>
+ * <br/>
+ * Uses the framed protocol ({@link SideTermProtocol}) unless raw mode is
+ * requested, the server falls back to raw output if it does not answer the
+ * handshake.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SideTermRemote {
+
+	private static final long HEARTBEAT_INTERVAL = 15000;
+
+	private Closeable connection;
+	private InputStream input;
+	private OutputStream output;
+	private boolean framed;
+	private boolean compress;
+	private int attach;
+	private volatile boolean closed;
+	private volatile boolean exited;
+	private volatile int session;
+	private volatile int status = 0;
+	private volatile SideTermLineEditor editor;
+
+	public SideTermRemote(Socket socket, boolean framed) throws IOException {
+		this(socket, framed, false);
+	}
+
+	public SideTermRemote(Socket socket, boolean framed, boolean compress) throws IOException {
+		socket.setTcpNoDelay(true);
+		init(socket, socket.getInputStream(), socket.getOutputStream(), framed, compress);
+	}
+
+	public SideTermRemote(SocketChannel channel, boolean framed, boolean compress) throws IOException {
+		channel.configureBlocking(true);
+
+		// Channels.newInputStream/newOutputStream would serialize reads and writes
+		init(channel, new InputStream() {
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0)
+					return 0;
+				return channel.read(ByteBuffer.wrap(b, off, len));
+			}
+		}, new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+		}, framed, compress);
+	}
+
+	private void init(Closeable connection, InputStream input, OutputStream output, boolean framed,
+			boolean compress) {
+		this.connection = connection;
+		this.input = input;
+		this.framed = framed;
+		this.compress = framed && compress;
+		this.output = new BufferedOutputStream(output);
+	}
+
+	/**
+	 * Reattaches to a detached session instead of starting a new one (framed
+	 * protocol only)
+	 *
+	 * @param session Session id
+	 */
+	public void setAttach(int session) {
+		attach = session;
+	}
+
+	/**
+	 * Retrieves the id of the remote session (0 if unknown)
+	 */
+	public int getSession() {
+		return session;
+	}
+
+	/**
+	 * Runs the client until the connection closes
+	 *
+	 * @return Exit status of the remote shell
+	 * @throws IOException If the connection fails
+	 */
+	public int run() throws IOException {
+		if (framed) {
+			synchronized (output) {
+				output.write(SideTermProtocol.MAGIC);
+				writeControl(SideTermProtocol.CONTROL_HELLO, SideTermProtocol.VERSION,
+						compress ? SideTermProtocol.FLAG_COMPRESSION : 0, attach);
+				int[] size = terminalSize();
+				if (size != null)
+					writeControl(SideTermProtocol.CONTROL_RESIZE, size[0], size[1]);
+				output.flush();
+			}
+			SideTermThreads.start(this::heartbeat, "SideTerminal Heartbeat");
+		}
+
+		Thread reader = SideTermThreads.start(() -> {
+			try {
+				readOutput(new BufferedInputStream(input));
+			} catch (IOException e) {
+			}
+			System.out.flush();
+			if (framed && !exited && session != 0)
+				System.err.println("\nConnection closed, reattach to session " + session + " with --attach " + session);
+			System.exit(status);
+		}, "SideTerminal Remote Output");
+
+		editor = SideTermLineEditor.create(System.out, new SideTermLineEditor.LineHandler() {
+			@Override
+			public void line(byte[] line) throws IOException {
+				sendInput(line, 0, line.length);
+			}
+
+			@Override
+			public void interrupt() throws IOException {
+				sendInterrupt();
+			}
+		});
+		if (editor != null) {
+			try {
+				editor.run(System.in);
+			} finally {
+				editor.restore();
+			}
+		} else {
+			byte[] buffer = new byte[8192];
+			while (true) {
+				int read = System.in.read(buffer);
+				if (read == -1)
+					break;
+				sendInput(buffer, 0, read);
+			}
+		}
+		if (framed && !exited) {
+			// End the session, the server closes the connection once the shell has exited
+			try {
+				sendControl(SideTermProtocol.CONTROL_EXIT, 0);
+				reader.join();
+			} catch (IOException | InterruptedException e) {
+			}
+		}
+		closed = true;
+		connection.close();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+		}
+		return status;
+	}
+
+	/**
+	 * Sends input to the remote shell
+	 *
+	 * @param data   Input bytes
+	 * @param offset Array offset
+	 * @param length Amount of bytes
+	 * @throws IOException If writing fails
+	 */
+	public void sendInput(byte[] data, int offset, int length) throws IOException {
+		synchronized (output) {
+			if (framed)
+				SideTermProtocol.writeFrame(output, SideTermProtocol.CHANNEL_STDIN, data, offset, length);
+			else
+				output.write(data, offset, length);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Interrupts the running remote command (interrupt control frame or ctrl+c
+	 * byte in raw mode)
+	 *
+	 * @throws IOException If writing fails
+	 */
+	public void sendInterrupt() throws IOException {
+		if (framed)
+			sendControl(SideTermProtocol.CONTROL_INTERRUPT);
+		else
+			sendInput(new byte[] { 0x03 }, 0, 1);
+	}
+
+	/**
+	 * Sends a control frame to the remote shell (framed protocol only)
+	 *
+	 * @param type   Control type
+	 * @param values Control values
+	 * @throws IOException If writing fails
+	 */
+	public void sendControl(int type, int... values) throws IOException {
+		if (!framed)
+			return;
+		synchronized (output) {
+			writeControl(type, values);
+			output.flush();
+		}
+	}
+
+	private void writeControl(int type, int... values) throws IOException {
+		byte[] payload = SideTermProtocol.control(type, values);
+		SideTermProtocol.writeFrame(output, SideTermProtocol.CHANNEL_CONTROL, payload, 0, payload.length);
+	}
+
+	private void heartbeat() {
+		while (!closed) {
+			try {
+				Thread.sleep(HEARTBEAT_INTERVAL);
+				synchronized (output) {
+					SideTermProtocol.writeFrame(output, SideTermProtocol.CHANNEL_HEARTBEAT, new byte[0], 0, 0);
+					output.flush();
+				}
+			} catch (InterruptedException | IOException e) {
+				break;
+			}
+		}
+	}
+
+	private void readOutput(InputStream input) throws IOException {
+		if (framed && !awaitHandshake(input)) {
+			return;
+		}
+		if (!framed) {
+			copyRaw(input);
+			return;
+		}
+
+		DataInputStream frames = new DataInputStream(input);
+		SideTermProtocol.Frame hello = SideTermProtocol.readFrame(frames);
+		if (hello.controlType() != SideTermProtocol.CONTROL_HELLO)
+			throw new IOException("Invalid handshake");
+		session = hello.controlValue(2);
+		int history = hello.controlValue(3);
+		if ((hello.controlValue(1) & SideTermProtocol.FLAG_COMPRESSION) != 0)
+			frames = new DataInputStream(new InflaterInputStream(input, new Inflater(), 65536));
+		byte[] buffer = new byte[8192];
+		while (history > 0) {
+			int read = frames.read(buffer, 0, Math.min(buffer.length, history));
+			if (read == -1)
+				return;
+			System.out.write(buffer, 0, read);
+			history -= read;
+		}
+		System.out.flush();
+
+		while (true) {
+			SideTermProtocol.Frame frame = SideTermProtocol.readFrame(frames);
+			switch (frame.channel) {
+			case SideTermProtocol.CHANNEL_STDOUT:
+				print(System.out, frame.payload, 0, frame.payload.length);
+				break;
+			case SideTermProtocol.CHANNEL_STDERR:
+				print(System.err, frame.payload, 0, frame.payload.length);
+				break;
+			case SideTermProtocol.CHANNEL_CONTROL:
+				if (frame.controlType() == SideTermProtocol.CONTROL_STATUS)
+					status = frame.controlValue(0);
+				else if (frame.controlType() == SideTermProtocol.CONTROL_EXIT) {
+					status = frame.controlValue(0);
+					exited = true;
+					return;
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Prints raw output until the handshake magic is received
+	 */
+	private boolean awaitHandshake(InputStream input) throws IOException {
+		byte[] magic = SideTermProtocol.MAGIC;
+		int matched = 0;
+		while (matched < magic.length) {
+			int b = input.read();
+			if (b == -1) {
+				System.out.write(magic, 0, matched);
+				System.out.flush();
+				return false;
+			}
+			if (b == (magic[matched] & 0xff)) {
+				matched++;
+				continue;
+			}
+			System.out.write(magic, 0, matched);
+			matched = b == (magic[0] & 0xff) ? 1 : 0;
+			if (matched == 0)
+				System.out.write(b);
+			if (input.available() == 0)
+				System.out.flush();
+		}
+		System.out.flush();
+		return true;
+	}
+
+	private void copyRaw(InputStream input) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (true) {
+			int read = input.read(buffer);
+			if (read == -1)
+				break;
+			print(System.out, buffer, 0, read);
+		}
+	}
+
+	private void print(OutputStream output, byte[] data, int offset, int length) throws IOException {
+		SideTermLineEditor editor = this.editor;
+		if (editor != null)
+			editor.write(output, data, offset, length);
+		else {
+			output.write(data, offset, length);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Retrieves the local terminal size (columns, rows) or null if unknown
+	 */
+	static int[] terminalSize() {
+		if (System.console() == null || !new File("/dev/tty").exists())
+			return null;
+		try {
+			ProcessBuilder builder = new ProcessBuilder("stty", "size");
+			builder.redirectInput(new File("/dev/tty"));
+			builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+			Process proc = builder.start();
+			String[] size = new String(proc.getInputStream().readAllBytes()).trim().split(" ");
+			if (proc.waitFor() != 0 || size.length != 2)
+				return null;
+			return new int[] { Integer.parseInt(size[1]), Integer.parseInt(size[0]) };
+		} catch (IOException | InterruptedException | NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
@@ -2,49 +2,241 @@ package org.asf.software.sideterminal;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ *
+ * SideTerminal Server - accepts sessions and multiplexes their socket I/O on a
+ * single event loop.<br/>
+ * <br/>
+ * The maximal amount of concurrent sessions is configured by the
+ * 'sideterminal.max.sessions' system property (defaults to 8), detached
+ * sessions do not count towards this limit but the longest detached session is
+ * destroyed when a new session would exceed it.<br/>
+ * <br/>
+ * By default the server listens on a random loopback TCP port, setting the
+ * 'sideterminal.transport' system property to 'unix' binds a Unix domain socket
+ * at ${java.io.tmpdir}/sideterminal-&lt;user&gt;/&lt;pid&gt;.sock instead, inside
+ * a directory only accessible by its owner (Java 16+, falls back to TCP on
+ * older runtimes).
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
 public class SideTermServer {
 
-	private ServerSocket server;
-	private int port;
+	private ServerSocketChannel server;
+	private Selector selector;
+	private int port = -1;
+	private Path socketPath;
 	private Random random = new Random();
 
+	private int maxSessions = Integer.getInteger("sideterminal.max.sessions", 8);
+	private int nextSessionId = 1;
+	private ArrayList<SideTermClient> sessions = new ArrayList<SideTermClient>();
+	private ConcurrentLinkedQueue<SideTermClient> pending = new ConcurrentLinkedQueue<SideTermClient>();
+
 	public static void start() {
 		new SideTermServer().startServer();
 	}
 
 	private void startServer() {
-		while (true) {
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			return;
+		}
+
+		if (System.getProperty("sideterminal.transport", "tcp").equalsIgnoreCase("unix")) {
+			if (!SideTermUnixSockets.isSupported()) {
+				System.err.println("SideTerminal: Unix domain sockets are not supported by this runtime, using TCP");
+			} else {
+				try {
+					socketPath = SideTermUnixSockets.getSocketPath(ProcessHandle.current().pid());
+					server = SideTermUnixSockets.bind(socketPath);
+					server.register(selector, SelectionKey.OP_ACCEPT);
+					System.out.println("-- DEBUG --");
+					System.out.println("Running SideTerminal on socket " + socketPath);
+					System.out.println("-- DEBUG --");
+				} catch (IOException e) {
+					System.err.println(
+							"SideTerminal: unable to bind " + socketPath + " (" + e.getMessage() + "), using TCP");
+					socketPath = null;
+					server = null;
+				}
+			}
+		}
+
+		while (server == null) {
 			try {
 				port = random.nextInt(Short.MAX_VALUE);
 				while (port <= 1024)
 					port = random.nextInt(Short.MAX_VALUE);
-				server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+				server = ServerSocketChannel.open();
+				server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+				server.configureBlocking(false);
+				server.register(selector, SelectionKey.OP_ACCEPT);
 				System.out.println("-- DEBUG --");
 				System.out.println("Running SideTerminal on port " + getPort());
 				System.out.println("-- DEBUG --");
-				break;
 			} catch (IOException e) {
+				try {
+					server.close();
+				} catch (IOException e1) {
+				}
+				server = null;
 			}
 		}
-		
-		while (server != null) {
-			try {
-				Socket sock = server.accept();
-				if (Thread.activeCount() > 3)
+
+		while (selector.isOpen()) {
+			long timeout = 0;
+			for (SideTermClient session : sessions) {
+				if (session.isNegotiating()) {
+					timeout = 100;
 					break;
-				SideTermClient.start(sock);
+				} else if (session.isDetached() || session.isFinished())
+					timeout = 1000;
+			}
+			try {
+				selector.select(timeout);
 			} catch (IOException e) {
+				break;
+			}
+
+			SideTermClient session;
+			while ((session = pending.poll()) != null)
+				session.update();
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid())
+					continue;
+
+				if (key.isAcceptable()) {
+					accept();
+				} else {
+					session = (SideTermClient) key.attachment();
+					if (key.isReadable())
+						session.handleRead();
+					if (key.isValid() && key.isWritable())
+						session.update();
+				}
+			}
+
+			long time = System.currentTimeMillis();
+			for (SideTermClient client : sessions.toArray(t -> new SideTermClient[t]))
+				client.tick(time);
+		}
+	}
+
+	private void accept() {
+		SocketChannel channel;
+		try {
+			channel = server.accept();
+		} catch (IOException e) {
+			return;
+		}
+		if (channel == null)
+			return;
+
+		try {
+			channel.configureBlocking(false);
+			SideTermClient session = new SideTermClient(this, channel, nextSessionId++);
+			session.register(selector);
+			sessions.add(session);
+		} catch (IOException e) {
+			try {
+				channel.close();
+			} catch (IOException e1) {
+			}
+		}
+	}
+
+	/**
+	 * Queues a session for an update on the event loop (thread-safe)
+	 */
+	void schedule(SideTermClient session) {
+		pending.add(session);
+		selector.wakeup();
+	}
 
+	/**
+	 * Checks the session limit before a session starts its shell, the longest
+	 * detached session is destroyed if it would be exceeded (event loop only)
+	 *
+	 * @param session Session starting its shell
+	 * @return True if the session may start, false if the limit is reached
+	 */
+	boolean admitSession(SideTermClient session) {
+		int active = 0;
+		int detached = 0;
+		SideTermClient oldest = null;
+		for (SideTermClient other : sessions) {
+			if (other == session || !other.isStarted())
+				continue;
+			if (!other.isDetached()) {
+				active++;
+				continue;
 			}
+			detached++;
+			if (oldest == null || other.getDetachTime() < oldest.getDetachTime())
+				oldest = other;
 		}
+		if (active >= maxSessions)
+			return false;
+		if (oldest != null && active + detached >= maxSessions)
+			oldest.destroy();
+		return true;
+	}
+
+	/**
+	 * Retrieves the maximal amount of concurrent sessions
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * Retrieves a detached session by id (event loop only)
+	 *
+	 * @param id Session id
+	 * @return SideTermClient instance or null if not found
+	 */
+	SideTermClient getDetachedSession(int id) {
+		for (SideTermClient session : sessions) {
+			if (session.getId() == id && session.isDetached())
+				return session;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a closed session (event loop only)
+	 */
+	void removeSession(SideTermClient session) {
+		sessions.remove(session);
 	}
 
 	public int getPort() {
 		return port;
 	}
 
+	/**
+	 * Retrieves the Unix domain socket path or null if the TCP transport is used
+	 */
+	public Path getSocketPath() {
+		return socketPath;
+	}
+
 }
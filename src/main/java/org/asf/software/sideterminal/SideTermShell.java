@@ -1,21 +1,70 @@
 package org.asf.software.sideterminal;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
+import org.asf.software.sideterminal.BytePipe.OverflowPolicy;
+import org.asf.software.sideterminal.commands.BgCommand;
 import org.asf.software.sideterminal.commands.CdCommand;
 import org.asf.software.sideterminal.commands.ExitCommand;
+import org.asf.software.sideterminal.commands.ExportCommand;
+import org.asf.software.sideterminal.commands.FgCommand;
+import org.asf.software.sideterminal.commands.HashCommand;
 import org.asf.software.sideterminal.commands.HelpCommand;
 import org.asf.software.sideterminal.commands.JavaInvoke;
+import org.asf.software.sideterminal.commands.JobsCommand;
+import org.asf.software.sideterminal.commands.KillCommand;
 import org.asf.software.sideterminal.commands.NewCommand;
+import org.asf.software.sideterminal.commands.ProcsCommand;
+import org.asf.software.sideterminal.commands.SourceCommand;
+import org.asf.software.sideterminal.commands.TimeoutCommand;
 import org.asf.software.sideterminal.commands.UnsetCommand;
 import org.asf.software.sideterminal.commands.VarsCommand;
+import org.asf.software.sideterminal.commands.WaitCommand;
+import org.asf.software.sideterminal.shell.CommandChain;
+import org.asf.software.sideterminal.shell.CommandIndex;
+import org.asf.software.sideterminal.shell.CommandLine;
+import org.asf.software.sideterminal.shell.OutputRedirect;
+import org.asf.software.sideterminal.shell.Pipeline;
+import org.asf.software.sideterminal.shell.ShellParser;
+import org.asf.software.sideterminal.shell.ShellScript;
+import org.asf.software.sideterminal.shell.SimpleCommand;
+import org.asf.software.sideterminal.shell.VariableExpander;
+import org.asf.software.sideterminal.shell.Word;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
@@ -46,6 +95,7 @@ public class SideTermShell {
 	}
 
 	private SideTermCommand[] commands = null;
+	private volatile CommandIndex commandIndex = null;
 
 	/**
 	 * Retrieves the known shell commands (embedded commands only)
@@ -56,12 +106,43 @@ public class SideTermShell {
 		return commands;
 	}
 
+	/**
+	 * Registers an additional shell command, existing commands with a matching
+	 * id take precedence
+	 * 
+	 * @param command Command to register
+	 */
+	public synchronized void registerCommand(SideTermCommand command) {
+		SideTermCommand[] current = getCommands();
+		SideTermCommand[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = command;
+		commands = updated;
+		commandIndex = null;
+	}
+
+	/**
+	 * Finds a shell command by its id
+	 * 
+	 * @param id Command id
+	 * @return SideTermCommand instance or null if not found
+	 */
+	public SideTermCommand findCommand(String id) {
+		CommandIndex index = commandIndex;
+		if (index == null || index.getCommands() != getCommands()) {
+			index = new CommandIndex(getCommands());
+			commandIndex = index;
+		}
+		return index.find(id);
+	}
+
 	/**
 	 * Defines the default known commands
 	 */
 	protected SideTermCommand[] defaultCommands() {
 		return new SideTermCommand[] { new CdCommand(), new ExitCommand(), new UnsetCommand(), new JavaInvoke(),
-				new NewCommand(), new VarsCommand(), new HelpCommand() };
+				new NewCommand(), new VarsCommand(), new HelpCommand(), new JobsCommand(), new FgCommand(),
+				new BgCommand(), new WaitCommand(), new KillCommand(), new SourceCommand(), new HashCommand(),
+				new ExportCommand(), new TimeoutCommand(), new ProcsCommand() };
 	}
 
 	/**
@@ -79,12 +160,15 @@ public class SideTermShell {
 		try {
 			javacode.getParentFile().mkdirs();
 			Files.write(javacode.toPath(), javaCode.getBytes());
-			ProcessBuilder builder = new ProcessBuilder("javac", "-classpath", data.get("CLASS.PATH").toString(),
-					javacode.getAbsolutePath());
+			String classPath = Objects.toString(getVariable("CLASS.PATH"), System.getProperty("java.class.path"));
+			ProcessBuilder builder = new ProcessBuilder("javac", "-classpath", classPath, javacode.getAbsolutePath());
 			Process proc = builder.start();
+			trackProcess(proc);
 			try {
 				proc.waitFor();
 			} catch (InterruptedException e) {
+				destroyProcessTree(proc);
+				throw new IOException("Compilation was interrupted.");
 			}
 			javacode.delete();
 			if (proc.exitValue() != 0) {
@@ -126,19 +210,54 @@ public class SideTermShell {
 	public HashMap<String, Class<?>> generatedClasses = new HashMap<String, Class<?>>();
 
 	/**
-	 * All child processes attached to this shell
+	 * All child processes attached to this shell, exited processes are removed
+	 * by their exit callbacks so access must be synchronized on the list
 	 */
 	public ArrayList<Process> childProcesses = new ArrayList<Process>();
 
 	/**
-	 * Variable objects
+	 * Variable objects, shared with pipeline stages and background jobs (null
+	 * once the shell is destroyed)<br/>
+	 * <br/>
+	 * The map is synchronized on itself, code iterating its views must
+	 * synchronize on it.
+	 * 
+	 * @deprecated Use {@link #getVariable(String)}, {@link #getVariables()},
+	 *             {@link #setVariable(String, Object)} and
+	 *             {@link #unsetVariable(String)}, writing the map directly
+	 *             does not update the child process environment
+	 */
+	@Deprecated
+	public volatile HashMap<String, Object> data = new ShellVariables();
+
+	// Names follow the platform environment order so Path and PATH are the same
+	// variable on Windows
+	private final Set<String> exported = new ConcurrentSkipListSet<String>(VariableExpander.NAME_ORDER);
+	private final Map<String, String> environment = new ConcurrentSkipListMap<String, String>(
+			VariableExpander.NAME_ORDER);
+	{
+		exported.addAll(VariableExpander.ENVIRONMENT.keySet());
+		environment.putAll(VariableExpander.ENVIRONMENT);
+	}
+
+	/**
+	 * System output stream (network)<br/>
+	 * <br/>
+	 * Capacity and overflow policy are configured by the
+	 * 'sideterminal.output.buffer' and 'sideterminal.output.overflow' (block,
+	 * drop or spill) system properties.
 	 */
-	public HashMap<String, Object> data = new HashMap<String, Object>();
+	public ShellOutputStream systemOutput = new ShellOutputStream(
+			Integer.getInteger("sideterminal.output.buffer", BytePipe.DEFAULT_CAPACITY),
+			OverflowPolicy.parse(System.getProperty("sideterminal.output.overflow"), OverflowPolicy.BLOCK));
 
 	/**
-	 * System output stream (network)
+	 * System error stream (network), merged with the output stream unless the
+	 * client uses the framed protocol
 	 */
-	public ShellOutputStream systemOutput = new ShellOutputStream();
+	public ShellOutputStream systemError = new ShellOutputStream(
+			Integer.getInteger("sideterminal.output.buffer", BytePipe.DEFAULT_CAPACITY),
+			OverflowPolicy.parse(System.getProperty("sideterminal.output.overflow"), OverflowPolicy.BLOCK));
 
 	/**
 	 * System input stream (network)
@@ -150,48 +269,256 @@ public class SideTermShell {
 	 */
 	public File pwd = new File(".");
 
-	private String[] split(String input, char delim) {
-		ArrayList<String> result = new ArrayList<String>();
+	private final TreeMap<Integer, ShellJob> jobs = new TreeMap<Integer, ShellJob>();
+	private final InheritableThreadLocal<ShellJob> currentJob = new InheritableThreadLocal<ShellJob>();
+	private volatile ShellJob foregroundJob;
+	private final InheritableThreadLocal<FutureTask<?>> currentTask = new InheritableThreadLocal<FutureTask<?>>();
+	private volatile FutureTask<?> foregroundTask;
 
-		String buffer = "";
-		for (char ch : input.toCharArray()) {
-			if (ch == delim) {
-				if (!buffer.isEmpty())
-					result.add(buffer);
-				buffer = "";
-			} else {
-				buffer += ch;
-			}
+	IntConsumer statusListener;
+	private volatile int[] terminalSize;
+
+	private long droppedOutput = 0;
+	private long spilledOutput = 0;
+	private long reportedDropped = 0;
+	private long reportedSpilled = 0;
+
+	private static volatile boolean fifoSupported = File.separatorChar == '/';
+
+	/**
+	 * Time in milliseconds terminated processes get to exit before they are
+	 * killed forcibly, configured by the 'sideterminal.terminate.timeout' system
+	 * property (defaults to 3000)
+	 */
+	public static final long TERMINATE_TIMEOUT = Long.getLong("sideterminal.terminate.timeout", 3000);
+
+	// Time an exited process output is waited for while no output arrives
+	private static final long OUTPUT_QUIET_TIME = 100;
+
+	private static final String[] WINDOWS_EXTENSIONS = new String[] { ".exe", ".bat", ".cmd", ".com" };
+
+	private final ConcurrentHashMap<Process, OutputPump[]> outputPumps = new ConcurrentHashMap<Process, OutputPump[]>();
+	private final ConcurrentHashMap<String, String> commandPaths = new ConcurrentHashMap<String, String>();
+	private String hashedPath;
+	private String[] pathSegments;
+
+	/**
+	 * Creates the buffer stream used between pipeline commands<br/>
+	 * <br/>
+	 * Pipeline stages run concurrently, writers block while the pipe is full.
+	 * Capacity and overflow policy are configured by the
+	 * 'sideterminal.pipe.buffer' and 'sideterminal.pipe.overflow' (block, drop or
+	 * spill) system properties.
+	 */
+	protected ShellOutputStream newPipeStream() {
+		return new ShellOutputStream(Integer.getInteger("sideterminal.pipe.buffer", BytePipe.DEFAULT_CAPACITY),
+				OverflowPolicy.parse(System.getProperty("sideterminal.pipe.overflow"), OverflowPolicy.BLOCK));
+	}
+
+	private synchronized void accountOverflow(ShellOutputStream stream) {
+		droppedOutput += stream.getDroppedBytes();
+		spilledOutput += stream.getSpilledBytes();
+	}
+
+	/**
+	 * Writes a notice if output has been dropped or spilled since the last report
+	 */
+	protected synchronized void reportOverflow() {
+		long dropped = droppedOutput + systemOutput.getDroppedBytes() + systemError.getDroppedBytes();
+		long spilled = spilledOutput + systemOutput.getSpilledBytes() + systemError.getSpilledBytes();
+		if (dropped != reportedDropped) {
+			systemOutput.writeLine("Warning: " + (dropped - reportedDropped)
+					+ " bytes of output were dropped because the output buffer was full.");
+			reportedDropped = dropped;
 		}
+		if (spilled != reportedSpilled) {
+			systemOutput.writeLine(
+					"Note: " + (spilled - reportedSpilled) + " bytes of output were spilled to a temporary file.");
+			reportedSpilled = spilled;
+		}
+	}
+
+	/**
+	 * Assigns a shell variable, the child process environment is updated if the
+	 * variable is exported
+	 * 
+	 * @param name  Variable name
+	 * @param value Variable value (null removes the value)
+	 */
+	public void setVariable(String name, Object value) {
+		Map<String, Object> vars = data;
+		if (vars == null)
+			return;
+		if (value == null)
+			vars.remove(name);
+		else
+			vars.put(name, value);
+		if (exported.contains(name))
+			updateEnvironment(name, value);
+	}
+
+	/**
+	 * Retrieves a shell variable
+	 * 
+	 * @param name Variable name
+	 * @return Variable value or null if not set
+	 */
+	public Object getVariable(String name) {
+		Map<String, Object> vars = data;
+		return vars == null ? null : vars.get(name);
+	}
+
+	/**
+	 * Retrieves all shell variables
+	 * 
+	 * @return Read-only view of the shell variables (iterate with forEach, the
+	 *         views of the map are not synchronized)
+	 */
+	public Map<String, Object> getVariables() {
+		Map<String, Object> vars = data;
+		return vars == null ? Map.of() : Collections.unmodifiableMap(vars);
+	}
+
+	/**
+	 * Removes a shell variable, this also removes it from the child process
+	 * environment
+	 * 
+	 * @param name Variable name
+	 */
+	public void unsetVariable(String name) {
+		Map<String, Object> vars = data;
+		if (vars != null)
+			vars.remove(name);
+		exported.remove(name);
+		environment.remove(name);
+	}
+
+	/**
+	 * Marks a variable as exported, exported variables with a string or
+	 * primitive value are passed to child processes (variables inherited from
+	 * the system environment are exported by default)
+	 * 
+	 * @param name Variable name
+	 */
+	public void exportVariable(String name) {
+		exported.add(name);
+		Object value = getVariable(name);
+		if (value != null)
+			updateEnvironment(name, value);
+		else if (VariableExpander.ENVIRONMENT.containsKey(name))
+			environment.put(name, VariableExpander.ENVIRONMENT.get(name));
+	}
+
+	/**
+	 * Marks a variable as shell-local, it is no longer passed to child processes
+	 * 
+	 * @param name Variable name
+	 */
+	public void unexportVariable(String name) {
+		exported.remove(name);
+		environment.remove(name);
+	}
 
-		return result.toArray(t -> new String[t]);
+	/**
+	 * Checks if a variable is exported
+	 * 
+	 * @param name Variable name
+	 * @return True if the variable is exported, false otherwise
+	 */
+	public boolean isExported(String name) {
+		return exported.contains(name);
 	}
 
 	/**
-	 * Retrieves the command file path by using the system variables
+	 * Retrieves the environment passed to child processes
+	 * 
+	 * @return Unmodifiable map of environment variables
+	 */
+	public Map<String, String> getEnvironment() {
+		return Collections.unmodifiableMap(environment);
+	}
+
+	private void updateEnvironment(String name, Object value) {
+		if (!name.isEmpty() && (value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character))
+			environment.put(name, value.toString());
+		else
+			environment.remove(name);
+	}
+
+	/**
+	 * Retrieves the command file path by using the system variables<br/>
+	 * <br/>
+	 * Resolved paths are cached by command name until PATH changes or the cache
+	 * is cleared, cached paths are checked to still exist before use.
 	 * 
 	 * @param file Input command
 	 * @return Full path or null
 	 */
 	public String getCommandPath(String file) {
-		for (String segment : split(
-				"." + File.pathSeparatorChar + data.getOrDefault("PATH", System.getenv("PATH")).toString(),
-				File.pathSeparatorChar)) {
+		String[] segments = getPathSegments();
+		boolean hashable = file.indexOf('/') == -1 && file.indexOf(File.separatorChar) == -1;
+		if (hashable) {
+			String path = commandPaths.get(file);
+			if (path != null && new File(path).exists())
+				return path;
+		}
+
+		String path = findCommandPath(file, segments);
+		if (hashable) {
+			if (path != null)
+				commandPaths.put(file, path);
+			else
+				commandPaths.remove(file);
+		}
+		return path;
+	}
+
+	/**
+	 * Retrieves the cached command paths (bash-style hash table)
+	 * 
+	 * @return Map of command names to resolved paths
+	 */
+	public Map<String, String> getHashedCommands() {
+		getPathSegments();
+		return new TreeMap<String, String>(commandPaths);
+	}
+
+	/**
+	 * Clears the cached command paths
+	 */
+	public void clearHashedCommands() {
+		commandPaths.clear();
+	}
+
+	private synchronized String[] getPathSegments() {
+		String path = Objects
+				.toString(getVariables().getOrDefault("PATH", VariableExpander.ENVIRONMENT.get("PATH")), "");
+		if (pathSegments == null || !path.equals(hashedPath)) {
+			ArrayList<String> segments = new ArrayList<String>();
+			for (String segment : ("." + File.pathSeparator + path).split(Pattern.quote(File.pathSeparator))) {
+				if (!segment.isEmpty())
+					segments.add(segment);
+			}
+			pathSegments = segments.toArray(t -> new String[t]);
+			hashedPath = path;
+			commandPaths.clear();
+		}
+		return pathSegments;
+	}
+
+	private static String findCommandPath(String file, String[] segments) {
+		for (String segment : segments) {
 			File bin = new File(segment, file);
 			if (bin.exists())
 				return bin.getAbsolutePath();
-			bin = new File(segment, file + ".exe");
-			if (bin.exists())
-				return bin.getAbsolutePath();
-			bin = new File(segment, file + ".bat");
-			if (bin.exists())
-				return bin.getAbsolutePath();
-			bin = new File(segment, file + ".cmd");
-			if (bin.exists())
-				return bin.getAbsolutePath();
-			bin = new File(segment, file + ".com");
-			if (bin.exists())
-				return bin.getAbsolutePath();
+			if (File.separatorChar != '\\')
+				continue;
+			for (String extension : WINDOWS_EXTENSIONS) {
+				bin = new File(segment, file + extension);
+				if (bin.exists())
+					return bin.getAbsolutePath();
+			}
 		}
 		return null;
 	}
@@ -206,6 +533,97 @@ public class SideTermShell {
 	 * @throws IOException If starting the process fails
 	 */
 	public Process runProcess(String[] command, ShellOutputStream outp, ShellInputStream inp) throws IOException {
+		return runProcess(command, outp, outp == systemOutput ? systemError : outp, inp);
+	}
+
+	/**
+	 * Runs the given process
+	 * 
+	 * @param command Command and arguments to run
+	 * @param outp    Shell output stream
+	 * @param errp    Shell error stream
+	 * @param inp     Shell input stream
+	 * @return Process instance
+	 * @throws IOException If starting the process fails
+	 */
+	public Process runProcess(String[] command, ShellOutputStream outp, ShellOutputStream errp, ShellInputStream inp)
+			throws IOException {
+		return runProcesses(List.of(new Stage(command)), outp, errp, inp).get(0);
+	}
+
+	/**
+	 * Runs the given processes as a pipeline connected by OS pipes (only the
+	 * input of the first and the output of the last process pass through the
+	 * shell streams)
+	 * 
+	 * @param commands Commands and arguments to run
+	 * @param outp     Shell output stream
+	 * @param errp     Shell error stream
+	 * @param inp      Shell input stream
+	 * @return List of process instances
+	 * @throws IOException If starting the processes fails
+	 */
+	public List<Process> runProcessPipeline(List<String[]> commands, ShellOutputStream outp, ShellOutputStream errp,
+			ShellInputStream inp) throws IOException {
+		ArrayList<Stage> stages = new ArrayList<Stage>();
+		for (String[] command : commands)
+			stages.add(new Stage(command));
+		return runProcesses(stages, outp, errp, inp);
+	}
+
+	/**
+	 * Starts the processes of the given stages, redirected streams are connected
+	 * to their files by the OS and are not pumped through the shell
+	 */
+	private List<Process> runProcesses(List<Stage> stages, ShellOutputStream outp, ShellOutputStream errp,
+			ShellInputStream inp) throws IOException {
+		ArrayList<ProcessBuilder> builders = new ArrayList<ProcessBuilder>();
+		for (Stage stage : stages) {
+			ProcessBuilder builder = createProcessBuilder(stage.args.toArray(t -> new String[t]));
+			builder.redirectError(stage.error);
+			builders.add(builder);
+		}
+		Stage lastStage = stages.get(stages.size() - 1);
+		ProcessBuilder lastBuilder = builders.get(builders.size() - 1);
+		lastBuilder.redirectOutput(lastStage.output);
+		boolean mergeError = errp == outp && lastStage.output.type() == ProcessBuilder.Redirect.Type.PIPE
+				&& lastStage.error.type() == ProcessBuilder.Redirect.Type.PIPE;
+		if (mergeError)
+			lastBuilder.redirectErrorStream(true);
+		List<Process> processes = builders.size() == 1 ? List.of(builders.get(0).start())
+				: ProcessBuilder.startPipeline(builders);
+
+		Process first = processes.get(0);
+		Process last = processes.get(processes.size() - 1);
+		for (int i = 0; i < processes.size(); i++) {
+			Process proc = processes.get(i);
+			trackProcess(proc);
+			ArrayList<OutputPump> pumps = new ArrayList<OutputPump>();
+			if (stages.get(i).error.type() == ProcessBuilder.Redirect.Type.PIPE && (proc != last || !mergeError))
+				pumps.add(pumpOutput(proc.getErrorStream(), errp, false, "Process Error Logger"));
+			if (proc == last && lastStage.output.type() == ProcessBuilder.Redirect.Type.PIPE)
+				pumps.add(pumpOutput(last.getInputStream(), outp, true, "Process Output Logger"));
+			if (!pumps.isEmpty()) {
+				OutputPump[] list = pumps.toArray(t -> new OutputPump[t]);
+				outputPumps.put(proc, list);
+				CompletableFuture.allOf(pumps.stream().map(t -> t.done).toArray(t -> new CompletableFuture<?>[t]))
+						.thenRun(() -> outputPumps.remove(proc, list));
+			}
+			if (i != 0) {
+				// The JVM keeps the read ends of the pipeline pipes open, so a writer never
+				// receives a broken pipe when its reader exits, terminate it instead
+				Process upstream = processes.get(i - 1);
+				proc.onExit().thenRun(() -> {
+					if (upstream.isAlive())
+						terminateProcessTree(upstream.toHandle(), TERMINATE_TIMEOUT);
+				});
+			}
+		}
+		pumpInput(first, inp);
+		return processes;
+	}
+
+	private ProcessBuilder createProcessBuilder(String[] command) throws IOException {
 		ProcessBuilder builder = new ProcessBuilder();
 		String pth = getCommandPath(command[0]);
 		if (pth == null)
@@ -213,69 +631,139 @@ public class SideTermShell {
 		command[0] = pth;
 		builder.command(command);
 
-		data.forEach((k, v) -> {
-			if (k.isEmpty())
-				return;
-			if (v instanceof String || v.getClass().isPrimitive()) {
-				builder.environment().put(k, v.toString());
-			}
-		});
+		Map<String, String> env = builder.environment();
+		env.clear();
+		env.putAll(environment);
 
 		builder.directory(pwd.getCanonicalFile());
-		Process proc = builder.start();
+		return builder;
+	}
 
-		Thread th = new Thread(() -> {
-			try {
-				proc.waitFor();
-			} catch (InterruptedException e) {
+	private void trackProcess(Process proc) {
+		ShellJob job = currentJob.get();
+		if (job != null)
+			job.addProcess(proc);
+		else {
+			synchronized (childProcesses) {
+				childProcesses.add(proc);
+			}
+		}
+		proc.onExit().thenRun(() -> {
+			if (job != null)
+				job.removeProcess(proc);
+			else {
+				synchronized (childProcesses) {
+					childProcesses.remove(proc);
+				}
 			}
-			if (childProcesses.contains(proc))
-				childProcesses.remove(proc);
-		}, "Shell process cleanup");
-		th.setDaemon(true);
-		th.start();
+		});
+	}
 
-		attachLoggers(proc, outp, inp);
-		childProcesses.add(proc);
-		return proc;
+	/**
+	 * Retrieves the child processes attached to this shell (processes of
+	 * background jobs are tracked by their jobs)
+	 * 
+	 * @return Snapshot of the child processes
+	 */
+	public List<Process> getChildProcesses() {
+		synchronized (childProcesses) {
+			return new ArrayList<Process>(childProcesses);
+		}
 	}
 
-	private void attachLoggers(Process proc, ShellOutputStream outp, ShellInputStream inp) {
-		Thread th = new Thread(() -> {
-			while (true) {
-				try {
-					int i = proc.getInputStream().read();
-					if (i == -1)
+	/**
+	 * Waits until the output of an exited process has been copied to the shell
+	 * streams, output written later by descendants still holding the process
+	 * streams is not waited for
+	 * 
+	 * @param proc Process to wait for
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public void awaitOutput(Process proc) throws InterruptedException {
+		proc.waitFor();
+		OutputPump[] pumps = outputPumps.remove(proc);
+		if (pumps != null) {
+			for (OutputPump pump : pumps)
+				pump.await();
+		}
+	}
+
+	private OutputPump pumpOutput(InputStream source, ShellOutputStream target, boolean closeOnBrokenPipe,
+			String name) {
+		OutputPump pump = new OutputPump();
+		SideTermThreads.execute(() -> {
+			byte[] buffer = new byte[8192];
+			try {
+				while (true) {
+					try {
+						pump.reading = true;
+						int read = source.read(buffer);
+						pump.reading = false;
+						if (read == -1)
+							break;
+						target.write(buffer, 0, read);
+						pump.lastActivity = System.nanoTime();
+						if (closeOnBrokenPipe && target.isClosed()) {
+							// Reader is gone, close the pipe so the process receives a broken pipe
+							source.close();
+							break;
+						}
+					} catch (IOException e) {
 						break;
-					outp.write(i);
-				} catch (IOException e) {
-					break;
+					}
 				}
+			} finally {
+				pump.done.complete(null);
 			}
-		}, "Process Output Logger");
-		th.setDaemon(true);
-		th.start();
-		th = new Thread(() -> {
+		}, name);
+		return pump;
+	}
+
+	/**
+	 *
+	 * Output pump of a process, finished once the process output reaches its end
+	 *
+	 */
+	private static class OutputPump {
+		private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		private volatile boolean reading;
+		private volatile long lastActivity = System.nanoTime();
+
+		/**
+		 * Waits for the end of the output, a pump of an exited process that has
+		 * been waiting for output for a while only waits for descendants that still
+		 * hold the stream and is no longer waited for
+		 */
+		private void await() throws InterruptedException {
 			while (true) {
 				try {
-					int i = proc.getErrorStream().read();
-					if (i == -1)
-						break;
-					outp.write(i);
-				} catch (IOException e) {
-					break;
+					done.get(OUTPUT_QUIET_TIME, TimeUnit.MILLISECONDS);
+					return;
+				} catch (ExecutionException e) {
+					return;
+				} catch (TimeoutException e) {
+					if (reading && System.nanoTime() - lastActivity >= OUTPUT_QUIET_TIME * 1000000)
+						return;
 				}
 			}
-		}, "Process Error Logger");
-		th.setDaemon(true);
-		th.start();
-		th = new Thread(() -> {
+		}
+	}
+
+	private void pumpInput(Process proc, ShellInputStream inp) {
+		// The pump waits without polling, the exit callback wakes it up, it stops
+		// taking input once its foreground command is interrupted as the process
+		// may still be terminating while the next line is typed
+		FutureTask<?> task = currentTask.get();
+		proc.onExit().thenRun(() -> inp.wakeUp());
+		SideTermThreads.execute(() -> {
+			byte[] buffer = new byte[8192];
 			while (true) {
 				try {
-					int i = inp.read(() -> proc.isAlive());
-					if (i == -1)
+					int read = inp.readSignalled(buffer, 0, buffer.length,
+							() -> proc.isAlive() && (task == null || !task.isCancelled()));
+					if (read == -1)
 						break;
-					proc.getOutputStream().write(i);
+					proc.getOutputStream().write(buffer, 0, read);
 					proc.getOutputStream().flush();
 				} catch (IOException e) {
 					break;
@@ -286,21 +774,11 @@ public class SideTermShell {
 			} catch (IOException e) {
 			}
 		}, "Process Input Handler");
-		th.setDaemon(true);
-		th.start();
-	}
-
-	private class CommandEntry {
-		public ArrayList<String> command = new ArrayList<String>();
-		public boolean pipeToRight = false;
-		public boolean receivePipe = false;
-		public boolean nextOnlyIf = false;
-		public boolean nextOnlyIfNot = false;
 	}
 
 	void start() {
-		data.put("CLASS.PATH", System.getProperty("java.class.path"));
-		Thread th = new Thread(() -> {
+		setVariable("CLASS.PATH", System.getProperty("java.class.path"));
+		SideTermThreads.start(() -> {
 			systemOutput.writeLine("");
 			systemOutput.writeLine("Welcome to SideTerminal!");
 			systemOutput.writeLine(
@@ -310,8 +788,14 @@ public class SideTermShell {
 					+ System.getProperty("java.vm.vendor"));
 			systemOutput.writeLine(
 					"PID: " + ProcessHandle.current().pid() + ", SideTerminal " + getName() + " " + getVersion());
+			runForeground(() -> {
+				runStartupScript();
+				return true;
+			});
 			while (data != null) {
-				if (!data.containsKey("SIDETERM.HIDE.INPUT") || !data.get("SIDETERM.HIDE.INPUT").equals("true")) {
+				reportOverflow();
+				reportJobs();
+				if (!"true".equals(getVariable("SIDETERM.HIDE.INPUT"))) {
 					systemOutput.writeLine("");
 					try {
 						systemOutput.write(pwd.getCanonicalPath() + "> ");
@@ -320,25 +804,103 @@ public class SideTermShell {
 					}
 				}
 				String input = systemInput.readStringUntilDelim('\n');
-				if (input == null)
+				if (input == null) {
+					// End of input, exit like the exit command
+					destroy();
 					return;
-				if (data == null)
-					return;
-				try {
-					processInput(input, () -> systemInput.readStringUntilDelim('\n'), systemInput, systemOutput);
-				} catch (IOException e) {
 				}
 				if (data == null)
 					return;
+				applyTerminalSize();
+				runForeground(() -> processInput(input, () -> systemInput.readStringUntilDelim('\n'), systemInput,
+						systemOutput));
+				Map<String, Object> vars = data;
+				if (vars == null)
+					return;
+				if (statusListener != null && vars.get("?") instanceof Integer)
+					statusListener.accept((int) vars.get("?"));
 			}
 		}, "SideTerminal Shell");
-		th.setDaemon(true);
-		th.start();
 	}
 
-	static final Map<Class<?>, Class<?>> PRIMITIVES = Map.of(byte.class, Byte.class, short.class, Short.class,
-			int.class, Integer.class, long.class, Long.class, float.class, Float.class, double.class, Double.class,
-			boolean.class, Boolean.class, char.class, Character.class);
+	/**
+	 * Runs a foreground command as cancellable task and waits for it to finish,
+	 * interrupting the shell cancels the task and returns to the prompt
+	 * immediately (a task that ignores the interrupt is left behind)
+	 */
+	private void runForeground(Callable<Boolean> command) {
+		FutureTask<Boolean> task = new FutureTask<Boolean>(command) {
+			@Override
+			public void run() {
+				currentTask.set(this);
+				super.run();
+			}
+		};
+		foregroundTask = task;
+		SideTermThreads.start(task, "SideTerminal Command");
+		try {
+			task.get();
+		} catch (CancellationException e) {
+			systemOutput.writeLine("");
+			setStatus(130);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			systemError.writeLine(
+					"Command failed: " + (cause instanceof IOException ? cause.getMessage() : cause.toString()));
+			setStatus(1);
+		} catch (InterruptedException e) {
+		} finally {
+			foregroundTask = null;
+		}
+	}
+
+	/**
+	 * Checks if the foreground command running on this thread was cancelled
+	 */
+	private boolean isCancelled() {
+		FutureTask<?> task = currentTask.get();
+		return task != null && task.isCancelled();
+	}
+
+	/**
+	 * Runs the script configured by the 'sideterminal.startup.script' system
+	 * property (if set)
+	 */
+	private void runStartupScript() {
+		String script = System.getProperty("sideterminal.startup.script");
+		if (script == null || script.isEmpty())
+			return;
+
+		File file = new File(script);
+		if (!file.isAbsolute())
+			file = new File(pwd, script);
+		try {
+			runScript(ShellScript.load(file.toPath()), systemInput, systemOutput);
+		} catch (IOException e) {
+			systemOutput.writeLine("Failed to read startup script " + file + ": " + e);
+		} catch (ParseException e) {
+			systemOutput.writeLine("Syntax error in startup script " + file + ", " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs a parsed script, commands run without prompts in between
+	 * 
+	 * @param script       Parsed script
+	 * @param systemInput  System input stream
+	 * @param systemOutput System output stream
+	 * @return Exit status of the last command
+	 * @throws IOException If running a command fails
+	 */
+	public int runScript(ShellScript script, ShellInputStream systemInput, ShellOutputStream systemOutput)
+			throws IOException {
+		for (ShellScript.Entry entry : script.getEntries()) {
+			if (data == null || isCancelled())
+				break;
+			processInput(entry.getLine(), entry.inputSupplier(), systemInput, systemOutput);
+		}
+		return getStatus(0);
+	}
 
 	/**
 	 * Runs the given input
@@ -351,510 +913,721 @@ public class SideTermShell {
 	 */
 	protected boolean processInput(String input, Supplier<String> nextLine, ShellInputStream systemInput,
 			ShellOutputStream systemOutput) throws IOException {
-		ArrayList<File> pipeFiles = new ArrayList<File>();
-		ArrayList<CommandEntry> commands = new ArrayList<CommandEntry>();
-
-		CommandEntry last = null;
-		String buffer = "";
-		ArrayList<String> commandArgs = new ArrayList<String>();
-
-		boolean quote = false;
-		boolean escape = false;
-		boolean filePipeIn = false;
-		boolean delimRead = false;
-
-		String inputFile = "";
-		boolean par = false;
-		boolean skip = false;
-		int index = 0;
-		for (char ch : input.toCharArray()) {
-			if (skip) {
-				index++;
-				skip = true;
+		CommandLine line;
+		try {
+			line = ShellParser.parse(input);
+		} catch (ParseException e) {
+			systemOutput.writeLine("Syntax error: " + e.getMessage());
+			setStatus(1);
+			return false;
+		}
+		return processInput(line, nextLine, systemInput, systemOutput);
+	}
+
+	/**
+	 * Runs the given parsed input
+	 * 
+	 * @param line         Parsed command line
+	 * @param nextLine     Method to call the get the next line
+	 * @param systemInput  System input stream
+	 * @param systemOutput System output stream
+	 * @throws IOException If running the command fails
+	 */
+	protected boolean processInput(CommandLine line, Supplier<String> nextLine, ShellInputStream systemInput,
+			ShellOutputStream systemOutput) throws IOException {
+		for (CommandChain chain : line.getChains()) {
+			if (data == null || isCancelled())
+				return false;
+			if (chain.isBackground()) {
+				startJob(chain, systemOutput);
 				continue;
 			}
-			if (filePipeIn) {
-				if (ch == ' ' && inputFile.isBlank()) {
-					index++;
-					continue;
-				}
-				if (ch == '<' && inputFile.isBlank()) {
-					delimRead = true;
-					index++;
-					continue;
-				}
-				if (!escape) {
-					if (ch == '\\') {
-						escape = true;
-						inputFile += ch;
-						index++;
+
+			List<Pipeline> pipelines = chain.getPipelines();
+			List<CommandChain.Operator> operators = chain.getOperators();
+			for (int i = 0; i < pipelines.size(); i++) {
+				if (data == null || isCancelled())
+					return false;
+				if (i != 0) {
+					int status = getStatus(0);
+					if ((operators.get(i - 1) == CommandChain.Operator.AND) != (status == 0))
 						continue;
-					} else if (ch == '\"' || ch == '(' || ch == ')') {
-						if (!quote) {
-							par = false;
-							if (ch == '(')
-								par = true;
-							quote = true;
-							if (!par) {
-								index++;
-								continue;
-							}
-						} else {
-							if (ch == '\"' && !par) {
-								quote = false;
-								if (!par) {
-									index++;
-									continue;
-								}
-							} else if (ch == ')' && par) {
-								quote = false;
-								if (!par) {
-									index++;
-									continue;
-								}
-							}
-						}
-					} else {
-						if (!quote) {
-							if (ch == ' ') {
-								inputFile = inputFile.trim();
-								if (delimRead) {
-									StringBuilder data = new StringBuilder();
-									while (true) {
-										String d = nextLine.get();
-										if (d.equals(inputFile))
-											break;
-										data.append(d).append(System.lineSeparator());
-									}
-									File pipeFile = File.createTempFile("stsh", ".pipe");
-									Files.write(pipeFile.toPath(), data.toString().getBytes());
-									pipeFiles.add(pipeFile);
-									commandArgs.add(pipeFile.getAbsolutePath());
-								} else {
-									boolean valid = false;
-									if (inputFile.startsWith("(")) {
-										inputFile = inputFile.substring(1);
-										if (inputFile.contains(")")) {
-											inputFile = inputFile.substring(0, inputFile.lastIndexOf(")"));
-											valid = true;
-											File pipeFile = File.createTempFile("stsh", ".pipe");
-											ShellOutputStream output = new ShellOutputStream();
-											try {
-												processInput(input, nextLine, systemInput, output);
-											} catch (IOException e) {
-											}
-											Files.write(pipeFile.toPath(), output.readAllBytes());
-											output.close();
-											pipeFiles.add(pipeFile);
-											commandArgs.add(pipeFile.getAbsolutePath());
-										}
-									}
-									if (!valid) {
-										File inputData = new File(inputFile);
-										File pipeFile = File.createTempFile("stsh", ".pipe");
-										if (!inputData.exists()) {
-											Files.write(pipeFile.toPath(), new byte[0]);
-										} else {
-											Files.copy(inputData.toPath(), pipeFile.toPath());
-										}
-										pipeFiles.add(pipeFile);
-										commandArgs.add(pipeFile.getAbsolutePath());
-									}
-								}
-								filePipeIn = false;
-								delimRead = false;
-								inputFile = "";
-								index++;
-								continue;
-							}
-						}
-					}
 				}
 
-				inputFile += ch;
-				escape = false;
-				index++;
-				continue;
+				boolean fallback = i < operators.size() && operators.get(i) == CommandChain.Operator.OR;
+				if (!runPipeline(pipelines.get(i), fallback, nextLine, systemInput, systemOutput))
+					return false;
 			}
-			if (!escape) {
-				if (ch == '\\') {
-					escape = true;
-					index++;
-					continue;
-				} else if (ch == '\"') {
-					quote = !quote;
-					index++;
-					continue;
-				} else {
-					if (!quote) {
-						if (ch == ' ') {
-							buffer = buffer.trim();
-							if (!buffer.isBlank()) {
-								commandArgs.add(buffer);
-							}
-							buffer = "";
-							index++;
-							continue;
-						} else if (ch == '<') {
-							filePipeIn = true;
-							index++;
-							continue;
-						} else if (ch == ';') {
-							buffer = buffer.trim();
-							if (!buffer.isBlank()) {
-								commandArgs.add(buffer);
-							}
-							buffer = "";
-
-							if (commandArgs.size() != 0 && !commandArgs.get(0).startsWith("#")) {
-								CommandEntry command = new CommandEntry();
-								if (last != null && last.pipeToRight) {
-									command.receivePipe = true;
-								}
-								command.command = new ArrayList<String>(commandArgs);
-								commands.add(command);
-								commandArgs.clear();
-								last = command;
-							}
-							index++;
-							continue;
-						} else if (ch == '|' && (index == input.length() || input.charAt(index + 1) != '|')) {
-							buffer = buffer.trim();
-							if (!buffer.isBlank()) {
-								commandArgs.add(buffer);
-							}
-							buffer = "";
-
-							if (commandArgs.size() != 0 && !commandArgs.get(0).startsWith("#")) {
-								CommandEntry command = new CommandEntry();
-								if (last != null && last.pipeToRight) {
-									command.receivePipe = true;
-								}
-								command.command = new ArrayList<String>(commandArgs);
-								command.pipeToRight = true;
-								commands.add(command);
-								commandArgs.clear();
-								last = command;
-							}
-							index++;
-							continue;
-						} else if (ch == '|') {
-							buffer = buffer.trim();
-							if (!buffer.isBlank()) {
-								commandArgs.add(buffer);
-							}
-							buffer = "";
-
-							if (commandArgs.size() != 0 && !commandArgs.get(0).startsWith("#")) {
-								CommandEntry command = new CommandEntry();
-								if (last != null && last.pipeToRight) {
-									command.receivePipe = true;
-								}
-								command.command = new ArrayList<String>(commandArgs);
-								command.nextOnlyIfNot = true;
-								commands.add(command);
-								commandArgs.clear();
-								last = command;
-							}
-							index++;
-							continue;
-						} else if (ch == '&' && (index < input.length() && input.charAt(index + 1) != '&')) {
-							buffer = buffer.trim();
-							if (!buffer.isBlank()) {
-								commandArgs.add(buffer);
-							}
-							buffer = "";
-
-							if (commandArgs.size() != 0 && !commandArgs.get(0).startsWith("#")) {
-								CommandEntry command = new CommandEntry();
-								if (last != null && last.pipeToRight) {
-									command.receivePipe = true;
-								}
-								command.command = new ArrayList<String>(commandArgs);
-								command.nextOnlyIf = true;
-								commands.add(command);
-								commandArgs.clear();
-								last = command;
-							}
-							index++;
-							continue;
-						}
-					}
-				}
-			} else {
-				if (ch != '\\' && ch != '\"' && ch != '<' && ch != ';' && ch != '|')
-					buffer += '\\';
+		}
+
+		if (data == null)
+			return false;
+
+		return getStatus(1) == 0;
+	}
+
+	/**
+	 * Retrieves the exit status of the last pipeline (of the current job when
+	 * called from a background job)
+	 */
+	private int getStatus(int def) {
+		ShellJob job = currentJob.get();
+		if (job != null) {
+			Integer status = job.getStatus();
+			return status == null ? def : status;
+		}
+		Map<String, Object> vars = data;
+		if (vars == null)
+			return def;
+		Object status = vars.getOrDefault("?", def);
+		return status instanceof Integer ? (int) status : def;
+	}
+
+	private void setStatus(int status) {
+		ShellJob job = currentJob.get();
+		if (job != null) {
+			job.setStatus(status);
+			return;
+		}
+		Map<String, Object> vars = data;
+		if (vars != null)
+			vars.put("?", status);
+	}
+
+	/**
+	 * Starts a command chain as background job
+	 */
+	private void startJob(CommandChain chain, ShellOutputStream systemOutput) {
+		CommandChain foreground = new CommandChain(chain.getPipelines(), chain.getOperators(), false);
+		CommandLine line = new CommandLine(foreground.toString(), List.of(foreground));
+		if (line.readsInputLines()) {
+			systemOutput.writeLine("Background jobs cannot read here-documents or !JAVA blocks.");
+			setStatus(1);
+			return;
+		}
+
+		ShellJob job;
+		synchronized (jobs) {
+			job = new ShellJob(jobs.isEmpty() ? 1 : jobs.lastKey() + 1, line.getSource());
+			jobs.put(job.getId(), job);
+		}
+		ShellInputStream input = new ShellInputStream();
+		input.autoClose();
+		job.start(() -> {
+			currentJob.set(job);
+			currentTask.set(null);
+			try {
+				processInput(line, () -> null, input, job.getOutput());
+			} catch (IOException e) {
 			}
-			buffer += ch;
-			escape = false;
-			index++;
+		});
+		systemOutput.writeLine("[" + job.getId() + "] " + line.getSource());
+		setStatus(0);
+	}
+
+	/**
+	 * Retrieves the background jobs of this shell
+	 */
+	public List<ShellJob> getJobs() {
+		synchronized (jobs) {
+			return new ArrayList<ShellJob>(jobs.values());
 		}
-		if (!inputFile.isBlank()) {
-			inputFile = inputFile.trim();
-			if (delimRead) {
-				StringBuilder data = new StringBuilder();
-				while (true) {
-					String d = nextLine.get();
-					if (d.equals(inputFile))
-						break;
-					data.append(d).append(System.lineSeparator());
-				}
-				File pipeFile = File.createTempFile("stsh", ".pipe");
-				Files.write(pipeFile.toPath(), data.toString().getBytes());
-				pipeFiles.add(pipeFile);
-				commandArgs.add(pipeFile.getAbsolutePath());
-			} else {
-				boolean valid = false;
-				if (inputFile.startsWith("(")) {
-					inputFile = inputFile.substring(1);
-					if (inputFile.contains(")")) {
-						inputFile = inputFile.substring(0, inputFile.lastIndexOf(")"));
-						valid = true;
-
-						File pipeFile = File.createTempFile("stsh", ".pipe");
-						ShellOutputStream output = new ShellOutputStream();
-						try {
-							processInput(input, nextLine, systemInput, output);
-						} catch (IOException e) {
-						}
-						Files.write(pipeFile.toPath(), output.readAllBytes());
-						output.close();
-						pipeFiles.add(pipeFile);
-						commandArgs.add(pipeFile.getAbsolutePath());
-					}
-				}
-				if (!valid) {
-					File inputData = new File(inputFile);
-					File pipeFile = File.createTempFile("stsh", ".pipe");
-					if (!inputData.exists()) {
-						Files.write(pipeFile.toPath(), new byte[0]);
-					} else {
-						Files.copy(inputData.toPath(), pipeFile.toPath());
-					}
-					pipeFiles.add(pipeFile);
-					commandArgs.add(pipeFile.getAbsolutePath());
-				}
+	}
+
+	/**
+	 * Finds a background job
+	 * 
+	 * @param spec Job number (optionally prefixed with %), null for the most
+	 *             recent job
+	 * @return ShellJob instance or null if not found
+	 */
+	public ShellJob findJob(String spec) {
+		synchronized (jobs) {
+			if (spec == null)
+				return jobs.isEmpty() ? null : jobs.lastEntry().getValue();
+			if (spec.startsWith("%"))
+				spec = spec.substring(1);
+			try {
+				return jobs.get(Integer.parseInt(spec));
+			} catch (NumberFormatException e) {
+				return null;
 			}
-			filePipeIn = false;
-			delimRead = false;
-			inputFile = "";
 		}
-		buffer = buffer.trim();
-		if (!buffer.isBlank()) {
-			commandArgs.add(buffer);
+	}
+
+	/**
+	 * Removes a finished job from the job table
+	 * 
+	 * @param job Job to remove
+	 */
+	public void removeJob(ShellJob job) {
+		synchronized (jobs) {
+			jobs.remove(job.getId(), job);
 		}
-		buffer = "";
+	}
 
-		if (commandArgs.size() != 0 && !commandArgs.get(0).startsWith("#")) {
-			CommandEntry command = new CommandEntry();
-			if (last != null && last.pipeToRight) {
-				command.receivePipe = true;
+	/**
+	 * Brings a job to the foreground, writes its buffered and new output until it
+	 * finishes (interrupting the shell terminates the job)
+	 * 
+	 * @param job    Job to wait for
+	 * @param output Output stream to write the job output to
+	 * @return Exit status of the job
+	 */
+	public int foreground(ShellJob job, ShellOutputStream output) {
+		foregroundJob = job;
+		try {
+			job.resume();
+			byte[] buffer = new byte[8192];
+			while (true) {
+				int read = job.getOutput().read(buffer, 0, buffer.length);
+				if (read == -1)
+					break;
+				output.write(buffer, 0, read);
 			}
-			command.command = new ArrayList<String>(commandArgs);
-			commands.add(command);
-			commandArgs.clear();
-			last = command;
+			int status = job.waitFor();
+			removeJob(job);
+			return status;
+		} catch (IOException | InterruptedException e) {
+			return 1;
+		} finally {
+			foregroundJob = null;
 		}
+	}
 
-		ShellInputStream stdIn = systemInput;
-		ShellOutputStream stdOut = systemOutput;
-		int i = 0;
-		for (CommandEntry cmd : commands) {
-			int i2 = 0;
-			for (String arg : cmd.command) {
-				arg = arg.replace("**RP", "****RP");
-				if (data == null)
-					return false;
-				for (String k : data.keySet()) {
-					Object v = data.get(k);
-					arg = arg.replace("\\$", "**RP");
-					if (k.isEmpty())
-						continue;
-					if (v instanceof String || PRIMITIVES.containsKey(v.getClass())
-							|| PRIMITIVES.containsValue(v.getClass())) {
-						if (k.matches("^[A-Za-z0-9_]+$") || k.equals("?"))
-							arg = arg.replace("$" + k, v.toString());
-						arg = arg.replace("${" + k + "}", v.toString());
-					}
+	/**
+	 * Writes a notice for background jobs that finished since the last report,
+	 * jobs without buffered output are removed from the job table
+	 */
+	protected void reportJobs() {
+		for (ShellJob job : getJobs()) {
+			if (job.getState() != ShellJob.State.DONE || job.isReported())
+				continue;
+			job.setReported();
+			int available = job.getOutput().available();
+			if (available == 0)
+				removeJob(job);
+			systemOutput.writeLine(job + (available == 0 ? ""
+					: " (" + available + " bytes of output, use fg " + job.getId() + " to show)"));
+		}
+	}
+
+	private boolean runPipeline(Pipeline pipeline, boolean fallback, Supplier<String> nextLine,
+			ShellInputStream systemInput, ShellOutputStream systemOutput) throws IOException {
+		List<SimpleCommand> commands = pipeline.getCommands();
+		ArrayList<PipeFile> pipeFiles = new ArrayList<PipeFile>();
+		try {
+			// Resolve all stages first, input sources read from the shell input before
+			// any stage starts consuming it
+			ArrayList<Stage> stages = new ArrayList<Stage>();
+			for (SimpleCommand cmd : commands) {
+				Stage stage = new Stage();
+				for (Word word : cmd.getWords()) {
+					if (data == null)
+						return false;
+					stage.args.add(resolveWord(word, nextLine, systemInput, pipeFiles));
 				}
-				if (data == null)
-					return false;
-				for (String k : System.getenv().keySet()) {
-					String v = System.getenv(k);
-					arg = arg.replace("\\$", "**RP");
-					if (k.isEmpty())
-						continue;
-					if (k.matches("^[A-Za-z0-9 _]+$"))
-						arg = arg.replace("$" + k, v.toString());
-					arg = arg.replace("${" + k + "}", v.toString());
+				for (OutputRedirect redirect : cmd.getRedirects()) {
+					File file = new File(expand(redirect.getTarget()));
+					if (!file.isAbsolute())
+						file = new File(pwd, file.getPath());
+					ProcessBuilder.Redirect target = redirect.isAppend() ? ProcessBuilder.Redirect.appendTo(file)
+							: ProcessBuilder.Redirect.to(file);
+					if (redirect.isError())
+						stage.error = target;
+					else
+						stage.output = target;
 				}
-				arg = arg.replace("**RP", "$");
-				arg = arg.replace("****RP", "**RP");
-				cmd.command.set(i2++, arg);
+				stages.add(stage);
 			}
-			if (i != 0 && commands.get(i - 1).nextOnlyIf) {
-				if ((int) data.getOrDefault("?", 0) != 0)
-					continue;
+
+			Integer status;
+			if (stages.size() == 1) {
+				status = runCommand(stages.get(0), fallback, nextLine, systemInput, systemOutput);
+			} else {
+				status = runStages(stages, fallback, nextLine, systemInput, systemOutput);
 			}
-			if (i != 0 && commands.get(i - 1).nextOnlyIfNot) {
-				if ((int) data.getOrDefault("?", 0) == 0)
-					continue;
+
+			if (status == null || data == null || isCancelled())
+				return false;
+			setStatus(status);
+			return true;
+		} finally {
+			pipeFiles.forEach(t -> t.release());
+		}
+	}
+
+	/**
+	 * Runs all pipeline stages at once, connected by bounded pipe streams (the
+	 * last stage runs on the calling thread)<br/>
+	 * <br/>
+	 * Runs of adjacent external commands are started as one stage connected by
+	 * OS pipes so their data does not pass through the shell.
+	 */
+	private int runStages(ArrayList<Stage> stages, boolean fallback, Supplier<String> nextLine,
+			ShellInputStream systemInput, ShellOutputStream systemOutput) {
+		ArrayList<List<Stage>> groups = new ArrayList<List<Stage>>();
+		int start = 0;
+		boolean external = isExternalCommand(stages.get(0));
+		for (int i = 1; i <= stages.size(); i++) {
+			boolean next = i < stages.size() && isExternalCommand(stages.get(i));
+			if (i == stages.size() || !external || !next
+					|| stages.get(i - 1).output.type() != ProcessBuilder.Redirect.Type.PIPE) {
+				groups.add(stages.subList(start, i));
+				start = i;
 			}
-			if (!cmd.receivePipe && i < commands.size()) {
-				stdIn = systemInput;
-			} else {
-				stdIn = new ShellInputStream(stdOut);
-				stdIn.autoClose();
+			external = next;
+		}
+
+		int count = groups.size();
+		ShellOutputStream[] pipes = new ShellOutputStream[count - 1];
+		for (int i = 0; i < pipes.length; i++)
+			pipes[i] = newPipeStream();
+
+		Thread[] threads = new Thread[count - 1];
+		for (int i = 0; i < count - 1; i++) {
+			List<Stage> commands = groups.get(i);
+			ShellOutputStream pipeIn = i == 0 ? null : pipes[i - 1];
+			ShellOutputStream pipeOut = pipes[i];
+			threads[i] = SideTermThreads.start(
+					() -> runStage(commands, false, nextLine, systemInput, pipeIn, pipeOut, pipeOut),
+					"Shell Pipeline Stage");
+		}
+		int status = runStage(groups.get(count - 1), fallback, nextLine, systemInput,
+				count == 1 ? null : pipes[count - 2], null, systemOutput);
+
+		for (Thread th : threads) {
+			try {
+				th.join();
+			} catch (InterruptedException e) {
 			}
-			if (cmd.pipeToRight && i < commands.size()) {
-				stdOut = new ShellOutputStream();
-			} else {
-				stdOut = systemOutput;
-			}
-
-			String command = cmd.command.get(0);
-			if (command.startsWith("!JAVA")) {
-				String name = nextLine.get();
-				if (name.equals("!ENDJAVA"))
-					continue;
-				name = name.trim();
-				if (name.startsWith("//"))
-					name = name.substring(2);
-				if (name.startsWith("#"))
-					name = name.substring(1);
-				name = name.trim();
-
-				StringBuilder javaCode = new StringBuilder();
-				while (true) {
-					String line = nextLine.get();
-					if (line == null) {
-						if (stdIn != systemInput)
-							stdIn.close();
-						if (stdOut != systemOutput)
-							stdOut.close();
-
-						data.put("?", 1);
-						return false;
-					}
-					if (line.trim().equals("!ENDJAVA"))
-						break;
-					javaCode.append(line).append("\n");
+		}
+		for (ShellOutputStream pipe : pipes) {
+			accountOverflow(pipe);
+			pipe.close();
+		}
+		return status;
+	}
+
+	/**
+	 * Checks if the given stage runs an external program
+	 */
+	private boolean isExternalCommand(Stage stage) {
+		String id = stage.args.get(0);
+		return !id.startsWith("!JAVA") && !id.contains("=") && findCommand(id) == null && getCommandPath(id) != null;
+	}
+
+	private int runStage(List<Stage> commands, boolean fallback, Supplier<String> nextLine,
+			ShellInputStream systemInput, ShellOutputStream pipeIn, ShellOutputStream pipeOut,
+			ShellOutputStream stdOut) {
+		ShellInputStream stdIn = pipeIn == null ? systemInput : new ShellInputStream(pipeIn);
+		Integer status;
+		try {
+			if (commands.size() == 1)
+				status = runCommand(commands.get(0), fallback, nextLine, stdIn, stdOut);
+			else
+				status = runExternalCommands(commands, stdIn, stdOut);
+		} catch (IOException e) {
+			status = null;
+		} finally {
+			// End of stream for the next stage, the previous stage stops writing
+			if (pipeOut != null)
+				pipeOut.autoClose();
+			if (pipeIn != null)
+				pipeIn.close();
+		}
+		return status == null ? 1 : status;
+	}
+
+	/**
+	 * Runs adjacent external commands connected by OS pipes
+	 * 
+	 * @return Exit status of the last command
+	 */
+	private int runExternalCommands(List<Stage> commands, ShellInputStream stdIn, ShellOutputStream stdOut) {
+		for (Stage stage : commands) {
+			if (!checkRedirects(stage, stdOut))
+				return 1;
+		}
+		List<Process> processes;
+		try {
+			processes = runProcesses(commands, stdOut, stdOut == systemOutput ? systemError : stdOut, stdIn);
+		} catch (IOException e) {
+			stdOut.writeLine("Unrecognized command, use help for a list of known commands.");
+			return 1;
+		}
+		return waitForProcesses(processes);
+	}
+
+	/**
+	 * Waits for the given processes, they are destroyed if the thread is
+	 * interrupted
+	 * 
+	 * @return Exit status of the last process
+	 */
+	private int waitForProcesses(List<Process> processes) {
+		int status = 0;
+		try {
+			for (Process proc : processes) {
+				status = proc.waitFor();
+				awaitOutput(proc);
+			}
+		} catch (InterruptedException e) {
+			processes.forEach(t -> destroyProcessTree(t));
+			return 130;
+		}
+		return status;
+	}
+
+	/**
+	 * Runs a single command
+	 * 
+	 * @return Exit status or null if processing should be aborted
+	 */
+	private Integer runCommand(Stage stage, boolean fallback, Supplier<String> nextLine, ShellInputStream stdIn,
+			ShellOutputStream stdOut) throws IOException {
+		if (!checkRedirects(stage, stdOut))
+			return 1;
+		ArrayList<String> args = new ArrayList<String>(stage.args);
+		String command = args.get(0);
+		if (command.startsWith("!JAVA")) {
+			String name = nextLine.get();
+			if (name == null)
+				return null;
+			if (name.equals("!ENDJAVA"))
+				return 0;
+			name = name.trim();
+			if (name.startsWith("//"))
+				name = name.substring(2);
+			if (name.startsWith("#"))
+				name = name.substring(1);
+			name = name.trim();
+
+			StringBuilder javaCode = new StringBuilder();
+			while (true) {
+				String line = nextLine.get();
+				if (line == null)
+					return null;
+				if (line.trim().equals("!ENDJAVA"))
+					break;
+				javaCode.append(line).append("\n");
+			}
+
+			String pkg = "";
+			String fullName = name;
+			if (name.contains(".")) {
+				pkg = name.substring(0, name.lastIndexOf("."));
+				name = name.substring(name.lastIndexOf(".") + 1);
+			}
+			try {
+				Class<?> cls = compileJavaCode(javaCode.toString(), name, pkg);
+				generatedClasses.put(fullName, cls);
+			} catch (IOException e) {
+				stdOut.writeLine("Failed to compile java code: " + e.getClass() + ": " + e.getMessage());
+				return 1;
+			}
+			return 0;
+		}
+
+		String id = args.remove(0);
+		if (id.contains("=")) {
+			if (data == null)
+				return null;
+			setVariable(id.substring(0, id.indexOf("=")),
+					id.substring(id.indexOf("=") + 1) + (args.isEmpty() ? "" : " " + String.join(" ", args)));
+			return 0;
+		}
+
+		SideTermCommand cmdInst = findCommand(id);
+		if (cmdInst != null) {
+			OutputStream fileOutput = null;
+			if (stage.output.type() != ProcessBuilder.Redirect.Type.PIPE) {
+				fileOutput = openRedirect(stage.output);
+				stdOut = new ShellOutputStream(fileOutput);
+			}
+			try {
+				if (!checkCommand(cmdInst, args.size())) {
+					invalidSyntax(cmdInst, stdOut, "");
+					return 1;
 				}
 
-				String pkg = "";
-				String fullName = name;
-				if (name.contains(".")) {
-					pkg = name.substring(0, name.lastIndexOf("."));
-					name = name.substring(name.lastIndexOf(".") + 1);
+				cmdInst = cmdInst.newInstance();
+				cmdInst.setup(stdOut, stdIn, this);
+				if (cmdInst.idIsRegex())
+					args.add(0, id);
+
+				boolean success = cmdInst.run(args.toArray(t -> new String[t]));
+				if (isCancelled())
+					return null;
+				if (cmdInst.getExitStatus() != null)
+					return cmdInst.getExitStatus();
+				if (!success && !fallback && !cmdInst.idIsRegex()) {
+					invalidSyntax(cmdInst, stdOut, "");
+				} else if (!success && !fallback) {
+					stdOut.writeLine("Unrecognized command, use help for a list of known commands.");
 				}
+				return success ? 0 : 1;
+			} finally {
+				if (fileOutput != null)
+					fileOutput.close();
+			}
+		}
+
+		List<Process> processes;
+		try {
+			processes = runProcesses(List.of(stage), stdOut, stdOut == systemOutput ? systemError : stdOut, stdIn);
+		} catch (IOException e) {
+			stdOut.writeLine("Unrecognized command, use help for a list of known commands.");
+			return 1;
+		}
+		return waitForProcesses(processes);
+	}
+
+	/**
+	 * Checks if the redirect files of the given stage can be written to
+	 */
+	private boolean checkRedirects(Stage stage, ShellOutputStream stdOut) {
+		for (ProcessBuilder.Redirect redirect : new ProcessBuilder.Redirect[] { stage.output, stage.error }) {
+			if (redirect.type() == ProcessBuilder.Redirect.Type.PIPE)
+				continue;
+			try {
+				FileChannel.open(redirect.file().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE).close();
+			} catch (NoSuchFileException e) {
+				stdOut.writeLine("Cannot write to " + redirect.file() + ": no such file or directory");
+				return false;
+			} catch (AccessDeniedException e) {
+				stdOut.writeLine("Cannot write to " + redirect.file() + ": permission denied");
+				return false;
+			} catch (IOException e) {
+				stdOut.writeLine("Cannot write to " + redirect.file() + ": " + e.getMessage());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Opens the file of a redirect for builtin commands
+	 */
+	private static OutputStream openRedirect(ProcessBuilder.Redirect redirect) throws IOException {
+		FileChannel channel = FileChannel.open(redirect.file().toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, redirect.type() == ProcessBuilder.Redirect.Type.APPEND
+						? StandardOpenOption.APPEND
+						: StandardOpenOption.TRUNCATE_EXISTING);
+		return new BufferedOutputStream(Channels.newOutputStream(channel), 65536);
+	}
+
+	/**
+	 * Resolves a command word into its argument, input sources are served
+	 * through named pipes or temporary files
+	 */
+	private String resolveWord(Word word, Supplier<String> nextLine, ShellInputStream stdIn,
+			ArrayList<PipeFile> pipeFiles) throws IOException {
+		switch (word.getType()) {
+		case HEREDOC: {
+			StringBuilder data = new StringBuilder();
+			while (true) {
+				String d = nextLine.get();
+				if (d == null || d.equals(word.getText()))
+					break;
+				data.append(d).append(System.lineSeparator());
+			}
+			byte[] bytes = data.toString().getBytes();
+			return openPipeSource(output -> output.write(bytes), bytes.length, null, pipeFiles);
+		}
+		case SUBSTITUTION: {
+			ShellOutputStream output = newPipeStream();
+			CommandLine substitution = word.getSubstitution();
+			Runnable run = () -> {
 				try {
-					Class<?> cls = compileJavaCode(javaCode.toString(), name, pkg);
-					generatedClasses.put(fullName, cls);
+					processInput(substitution, nextLine, stdIn, output);
 				} catch (IOException e) {
-					stdOut.writeLine("Failed to compile java code: " + e.getClass() + ": " + e.getMessage());
-					data.put("?", 1);
+				} finally {
+					output.autoClose();
 				}
-			} else {
-				ArrayList<String> args = new ArrayList<String>(cmd.command);
-				String id = args.get(0);
-				args.remove(0);
+			};
+			if (substitution.readsInputLines()) {
+				// Reads the shell input, needs to finish before the command starts
+				run.run();
+			} else
+				SideTermThreads.start(run, "Shell Process Substitution");
+			return openPipeSource(target -> {
+				try {
+					new ShellInputStream(output).transferTo(target);
+				} finally {
+					output.close();
+				}
+			}, -1, output, pipeFiles);
+		}
+		case INPUT_FILE: {
+			File inputData = new File(expand(word.getText()));
+			if (!inputData.isAbsolute())
+				inputData = new File(pwd, inputData.getPath());
+			return inputData.getAbsolutePath();
+		}
+		default:
+			return expand(word.getText());
+		}
+	}
 
-				boolean found = false;
-				if (id.contains("=")) {
-					String key = id.substring(0, id.indexOf("="));
-					if (data != null)
-						data.put("?", 0);
+	/**
+	 *
+	 * Writes the data of a generated input source
+	 *
+	 */
+	private static interface PipeSource {
+		public void writeTo(OutputStream output) throws IOException;
+	}
 
-					String value = input.substring(input.indexOf("=") + 1);
-					data.put(key, value);
+	/**
+	 *
+	 * Resolved pipeline stage, command arguments and output redirects
+	 *
+	 */
+	private static class Stage {
+		private final ArrayList<String> args = new ArrayList<String>();
+		private ProcessBuilder.Redirect output = ProcessBuilder.Redirect.PIPE;
+		private ProcessBuilder.Redirect error = ProcessBuilder.Redirect.PIPE;
 
-					found = true;
-				}
+		private Stage() {
+		}
 
-				if (!found) {
-					for (SideTermCommand cmdInst : getCommands()) {
-						if (cmdInst.id().equalsIgnoreCase(id) || (cmdInst.idIsRegex() && id.matches(cmdInst.id()))) {
-							found = true;
-
-							if (!checkCommand(cmdInst, args.size())) {
-								invalidSyntax(cmdInst, stdOut, "");
-							} else {
-								cmdInst = cmdInst.newInstance();
-								cmdInst.setup(stdOut, stdIn, this);
-
-								if (cmdInst.idIsRegex()) {
-									ArrayList<String> newArgs = new ArrayList<String>();
-									newArgs.add(id);
-									newArgs.addAll(args);
-									args = newArgs;
-								}
-
-								boolean success = cmdInst.run(args.toArray(t -> new String[t]));
-								if (!success && !cmd.nextOnlyIfNot && !cmdInst.idIsRegex()) {
-									invalidSyntax(cmdInst, stdOut, "");
-								} else if (!success && !cmd.nextOnlyIfNot) {
-									stdOut.writeLine("Unrecognized command, use help for a list of known commands.");
-								}
-
-								if (stdIn != systemInput)
-									stdIn.autoClose();
-								if (stdOut != systemOutput)
-									stdOut.autoClose();
-
-								pipeFiles.forEach(t -> t.delete());
-								if (data != null)
-									data.put("?", success ? 0 : 1);
-							}
+		private Stage(String[] command) {
+			args.addAll(Arrays.asList(command));
+		}
+	}
 
-							break;
-						}
-					}
-				}
+	/**
+	 * Creates a file argument for generated input, on unix systems this is a
+	 * named pipe that is written to while the command reads it, elsewhere or
+	 * for data below the file threshold the data is written to a temporary
+	 * file<br/>
+	 * <br/>
+	 * Creating a named pipe runs mkfifo, which costs more than writing a small
+	 * temporary file, the threshold is configured by the
+	 * 'sideterminal.pipe.file.threshold' system property (in bytes, defaults to
+	 * 65536, -1 to always use a temporary file). Data of unknown size always
+	 * uses a named pipe where supported.
+	 */
+	private String openPipeSource(PipeSource source, long size, ShellOutputStream stream,
+			ArrayList<PipeFile> pipeFiles) throws IOException {
+		long threshold = Long.getLong("sideterminal.pipe.file.threshold", 65536);
+		if (fifoSupported && (size == -1 || (threshold != -1 && size >= threshold))) {
+			PipeFile pipe = new PipeFile(Files.createTempFile("stsh", ".pipe").toFile());
+			pipeFiles.add(pipe);
+			pipe.file.delete();
+			try {
+				Process proc = new ProcessBuilder("mkfifo", "-m", "600", pipe.file.getAbsolutePath())
+						.redirectErrorStream(true).start();
+				proc.getInputStream().readAllBytes();
+				if (proc.waitFor() != 0)
+					fifoSupported = false;
+			} catch (IOException | InterruptedException e) {
+				fifoSupported = false;
+			}
 
-				if (!found) {
+			if (fifoSupported) {
+				pipe.fifo = true;
+				SideTermThreads.start(() -> {
 					try {
-						Process proc = runProcess(cmd.command.toArray(t -> new String[t]), stdOut, stdIn);
-						proc.waitFor();
-
-						if (stdIn != systemInput)
-							stdIn.autoClose();
-						if (stdOut != systemOutput)
-							stdOut.autoClose();
-
-						pipeFiles.forEach(t -> t.delete());
-						if (data != null)
-							data.put("?", proc.exitValue());
-					} catch (IOException | InterruptedException e) {
-						stdOut.writeLine("Unrecognized command, use help for a list of known commands.");
-
-						if (stdIn != systemInput)
-							stdIn.autoClose();
-						if (stdOut != systemOutput)
-							stdOut.autoClose();
-
-						pipeFiles.forEach(t -> t.delete());
-						if (data != null)
-							data.put("?", 1);
+						pipe.write(source);
+					} catch (IOException e) {
+						// Reader closed the pipe early or it was released unread
+						if (stream != null)
+							stream.close();
 					}
-				}
+				}, "Shell Pipe Source");
+				return pipe.file.getAbsolutePath();
 			}
+		}
 
-			i++;
-			if (stdOut != systemOutput)
-				stdOut.autoClose();
+		// Temporary files are created readable by the owner only
+		PipeFile pipe = new PipeFile(Files.createTempFile("stsh", ".pipe").toFile());
+		pipeFiles.add(pipe);
+		try (OutputStream output = Files.newOutputStream(pipe.file.toPath(), StandardOpenOption.WRITE)) {
+			source.writeTo(output);
 		}
+		return pipe.file.getAbsolutePath();
+	}
 
-		if (stdIn != systemInput)
-			stdIn.close();
-		if (stdOut != systemOutput)
-			stdOut.close();
+	/**
+	 *
+	 * Generated input file, a named pipe is only opened by its writer until it
+	 * is released and only removed once its writer opened it or gave up
+	 *
+	 */
+	private static class PipeFile {
+		private final File file;
+		private boolean fifo;
+		private boolean released;
+		private boolean opening;
+		private boolean opened;
+
+		private PipeFile(File file) {
+			this.file = file;
+		}
 
-		pipeFiles.forEach(t -> t.delete());
+		private void write(PipeSource source) throws IOException {
+			synchronized (this) {
+				if (released)
+					throw new IOException("Pipe released before it was opened");
+				opening = true;
+			}
+			try {
+				// Opened without create, a removed pipe must not turn into a regular file
+				try (OutputStream output = Files.newOutputStream(file.toPath(), StandardOpenOption.WRITE)) {
+					setOpened();
+					source.writeTo(output);
+				}
+			} finally {
+				setOpened();
+			}
+		}
 
-		if (data == null)
-			return false;
+		private synchronized void setOpened() {
+			opened = true;
+			notifyAll();
+		}
 
-		return (int) data.getOrDefault("?", 1) == 0;
+		/**
+		 * Removes the file, a writer still waiting for a reader is released first
+		 */
+		private void release() {
+			boolean waiting;
+			synchronized (this) {
+				released = true;
+				waiting = fifo && opening && !opened;
+			}
+			if (waiting) {
+				// Opening a named pipe for reading and writing does not block, the
+				// handle stays open until the writer opened its end
+				try {
+					RandomAccessFile reader = new RandomAccessFile(file, "rw");
+					try {
+						synchronized (this) {
+							while (!opened)
+								wait();
+						}
+					} finally {
+						reader.close();
+					}
+				} catch (IOException e) {
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			file.delete();
+		}
+	}
+
+	/**
+	 * Expands the variables in the given argument
+	 * 
+	 * @param arg Argument text
+	 * @return Expanded text
+	 */
+	protected String expand(String arg) {
+		return VariableExpander.expand(arg, getVariables());
 	}
 
 	public static boolean checkCommand(SideTermCommand command, int arguments) {
@@ -871,24 +1644,120 @@ public class SideTermShell {
 		output.writeLine("------ Description: " + command.description());
 	}
 
+	/**
+	 * Interrupts the running command - cancels the foreground task, destroys its
+	 * child process trees and discards queued input
+	 */
+	public void interrupt() {
+		// Cancel first so the command chain stops before it sees its processes exit,
+		// the foreground job is read before as cancelling the task releases it
+		ShellJob job = foregroundJob;
+		FutureTask<?> task = foregroundTask;
+		if (task != null)
+			task.cancel(true);
+		systemInput.wakeUp();
+		for (Process proc : getChildProcesses())
+			destroyProcessTree(proc);
+		if (job != null)
+			job.kill(false);
+
+		byte[] buffer = new byte[8192];
+		while (systemInput.getPipe().poll(buffer, 0, buffer.length) > 0)
+			;
+	}
+
+	/**
+	 * Destroys a process and all its descendants, processes still running after
+	 * the termination timeout are killed forcibly
+	 * 
+	 * @param proc Process to destroy
+	 */
+	public static void destroyProcessTree(Process proc) {
+		terminateProcessTree(proc.toHandle(), TERMINATE_TIMEOUT);
+	}
+
+	/**
+	 * Terminates a process and all its descendants in parallel, each process is
+	 * asked to terminate and killed forcibly if it is still running after the
+	 * given timeout
+	 * 
+	 * @param root    Root process
+	 * @param timeout Time in milliseconds before processes are killed forcibly
+	 *                (0 to kill them forcibly right away)
+	 * @return Future completed once all processes of the tree have exited
+	 */
+	public static CompletableFuture<Void> terminateProcessTree(ProcessHandle root, long timeout) {
+		// Snapshot the tree first, descendants are reparented once their parent exits
+		ArrayList<ProcessHandle> tree = new ArrayList<ProcessHandle>();
+		root.descendants().forEach(t -> tree.add(t));
+		tree.add(root);
+		return CompletableFuture
+				.allOf(tree.stream().map(t -> terminateProcess(t, timeout)).toArray(t -> new CompletableFuture<?>[t]));
+	}
+
+	private static CompletableFuture<ProcessHandle> terminateProcess(ProcessHandle proc, long timeout) {
+		if (timeout <= 0) {
+			proc.destroyForcibly();
+			return proc.onExit();
+		}
+		proc.destroy();
+		return proc.onExit().completeOnTimeout(proc, timeout, TimeUnit.MILLISECONDS).thenCompose(t -> {
+			if (!t.isAlive())
+				return CompletableFuture.completedFuture(t);
+			t.destroyForcibly();
+			return t.onExit();
+		});
+	}
+
+	/**
+	 * Assigns the terminal size reported by the client (COLUMNS and LINES
+	 * variables)
+	 * 
+	 * @param columns Terminal width
+	 * @param rows    Terminal height
+	 */
+	public void setTerminalSize(int columns, int rows) {
+		terminalSize = new int[] { columns, rows };
+	}
+
+	private void applyTerminalSize() {
+		int[] size = terminalSize;
+		if (size == null)
+			return;
+		terminalSize = null;
+		setVariable("COLUMNS", Integer.toString(size[0]));
+		setVariable("LINES", Integer.toString(size[1]));
+		exportVariable("COLUMNS");
+		exportVariable("LINES");
+	}
+
 	/**
 	 * Destroys this shell and all its child processes
 	 */
 	public void destroy() {
-		if (data == null)
+		Map<String, Object> vars = data;
+		if (vars == null)
 			return;
-		for (Process proc : childProcesses.toArray(t -> new Process[t])) {
-			proc.destroy();
-			try {
-				proc.waitFor();
-			} catch (InterruptedException e) {
-			}
+		ArrayList<CompletableFuture<Void>> teardown = new ArrayList<CompletableFuture<Void>>();
+		for (Process proc : getChildProcesses())
+			teardown.add(terminateProcessTree(proc.toHandle(), TERMINATE_TIMEOUT));
+		for (ShellJob job : getJobs()) {
+			teardown.add(job.kill(false));
+			removeJob(job);
+		}
+		try {
+			CompletableFuture.allOf(teardown.toArray(t -> new CompletableFuture<?>[t])).get(TERMINATE_TIMEOUT + 1000,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
 		}
 		systemOutput.close();
+		systemError.close();
 		systemInput.close();
-		childProcesses.clear();
+		synchronized (childProcesses) {
+			childProcesses.clear();
+		}
 		generatedClasses.clear();
-		data.clear();
+		vars.clear();
 		data = null;
 	}
 
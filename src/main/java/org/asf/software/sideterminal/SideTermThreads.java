@@ -0,0 +1,119 @@
+package org.asf.software.sideterminal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Thread factory for session, shell and process tasks.<br/>
+ * <br/>
+ * When the 'sideterminal.virtual.threads' system property is set to true and
+ * the runtime supports virtual threads (Java 21+), tasks run on virtual threads
+ * so idle sessions and long-running child processes do not hold platform
+ * threads of the debugged application. Otherwise daemon platform threads are
+ * used.<br/>
+ * <br/>
+ * Short-lived tasks (such as process stream pumps) can be run with
+ * {@link #execute(Runnable, String)}, without virtual threads these share a
+ * pool of daemon threads that are kept alive for 60 seconds after their last
+ * task so launching many processes does not create a thread per stream.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SideTermThreads {
+
+	private static Method ofVirtual;
+	private static Method builderName;
+	private static Method builderStart;
+
+	private static ExecutorService pool;
+
+	static {
+		if (Boolean.getBoolean("sideterminal.virtual.threads")) {
+			try {
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+				Method ofVirtualMth = Thread.class.getMethod("ofVirtual");
+				Method nameMth = builder.getMethod("name", String.class);
+				Method startMth = builder.getMethod("start", Runnable.class);
+
+				ofVirtual = ofVirtualMth;
+				builderName = nameMth;
+				builderStart = startMth;
+			} catch (ClassNotFoundException | NoSuchMethodException | SecurityException e) {
+			}
+		}
+	}
+
+	/**
+	 * Checks if tasks are run on virtual threads
+	 */
+	public static boolean isVirtual() {
+		return ofVirtual != null;
+	}
+
+	/**
+	 * Starts a new task thread
+	 *
+	 * @param task Task to run
+	 * @param name Thread name
+	 * @return Thread instance
+	 */
+	public static Thread start(Runnable task, String name) {
+		if (ofVirtual != null) {
+			try {
+				Object builder = ofVirtual.invoke(null);
+				builder = builderName.invoke(builder, name);
+				return (Thread) builderStart.invoke(builder, task);
+			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+				ofVirtual = null;
+			}
+		}
+
+		Thread th = new Thread(task, name);
+		th.setDaemon(true);
+		th.start();
+		return th;
+	}
+
+	/**
+	 * Runs a short-lived task on a pooled thread (or a new virtual thread)
+	 *
+	 * @param task Task to run
+	 * @param name Thread name used while the task is running
+	 */
+	public static void execute(Runnable task, String name) {
+		if (ofVirtual != null) {
+			start(task, name);
+			return;
+		}
+
+		getPool().execute(() -> {
+			Thread th = Thread.currentThread();
+			th.setName(name);
+			try {
+				task.run();
+			} finally {
+				th.setName("SideTerminal Pool");
+			}
+		});
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			// Unbounded as pump tasks block, idle threads are released after 60 seconds
+			pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), task -> {
+						Thread th = new Thread(task, "SideTerminal Pool");
+						th.setDaemon(true);
+						return th;
+					});
+		}
+		return pool;
+	}
+
+}
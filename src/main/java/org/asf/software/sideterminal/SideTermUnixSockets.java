@@ -0,0 +1,159 @@
+package org.asf.software.sideterminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ *
+ * Unix domain socket support for the SideTerminal transport.<br/>
+ * <br/>
+ * Unix domain socket channels require Java 16+, the API is accessed through
+ * reflection so SideTerminal keeps running on older runtimes (where only the
+ * TCP transport is available).
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SideTermUnixSockets {
+
+	private static ProtocolFamily unixFamily;
+	private static Method openServer;
+	private static Method addressOf;
+
+	static {
+		try {
+			ProtocolFamily family = StandardProtocolFamily.valueOf("UNIX");
+			Method openMth = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+			Method ofMth = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+
+			unixFamily = family;
+			openServer = openMth;
+			addressOf = ofMth;
+		} catch (IllegalArgumentException | ClassNotFoundException | NoSuchMethodException | SecurityException e) {
+		}
+	}
+
+	/**
+	 * Checks if the runtime supports Unix domain socket channels
+	 */
+	public static boolean isSupported() {
+		return unixFamily != null;
+	}
+
+	/**
+	 * Retrieves the default socket path of a SideTerminal process, sockets are
+	 * kept in a per-user directory in ${java.io.tmpdir}
+	 *
+	 * @param pid Process ID of the application running SideTerminal
+	 * @return Socket path
+	 */
+	public static Path getSocketPath(long pid) {
+		String user = System.getProperty("user.name", "").replaceAll("[^A-Za-z0-9._-]", "_");
+		return new File(System.getProperty("java.io.tmpdir"), "sideterminal-" + user).toPath()
+				.resolve(pid + ".sock");
+	}
+
+	/**
+	 * Binds a new non-blocking server channel to the given socket path, stale
+	 * socket files are replaced and the socket is only accessible by the
+	 * owner<br/>
+	 * <br/>
+	 * The parent directory is created owner-only (0700) before binding, existing
+	 * directories must be owned by the current user and must not be accessible by
+	 * others.
+	 *
+	 * @param path Socket path
+	 * @return ServerSocketChannel instance
+	 * @throws IOException If binding fails or Unix domain sockets are not
+	 *                     supported
+	 */
+	public static ServerSocketChannel bind(Path path) throws IOException {
+		if (!isSupported())
+			throw new IOException("Unix domain sockets are not supported by this runtime");
+
+		createPrivateDirectory(path.toAbsolutePath().getParent());
+		Files.deleteIfExists(path);
+		ServerSocketChannel server;
+		try {
+			server = (ServerSocketChannel) openServer.invoke(null, unixFamily);
+		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			throw new IOException("Unable to open Unix domain socket", e);
+		}
+		try {
+			server.bind(address(path));
+			try {
+				Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+			} catch (UnsupportedOperationException e) {
+			}
+			path.toFile().deleteOnExit();
+			server.configureBlocking(false);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		return server;
+	}
+
+	/**
+	 * Connects to a SideTerminal Unix domain socket
+	 *
+	 * @param path Socket path
+	 * @return Blocking SocketChannel instance
+	 * @throws IOException If connecting fails or Unix domain sockets are not
+	 *                     supported
+	 */
+	public static SocketChannel connect(Path path) throws IOException {
+		if (!isSupported())
+			throw new IOException("Unix domain sockets are not supported by this runtime");
+		return SocketChannel.open(address(path));
+	}
+
+	private static void createPrivateDirectory(Path dir) throws IOException {
+		if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			Files.createDirectories(dir);
+			return;
+		}
+
+		Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+		try {
+			Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+		} catch (FileAlreadyExistsException e) {
+		}
+
+		// Refuse directories that another user could have prepared
+		PosixFileAttributes attributes = Files.readAttributes(dir, PosixFileAttributes.class,
+				LinkOption.NOFOLLOW_LINKS);
+		UserPrincipal user = dir.getFileSystem().getUserPrincipalLookupService()
+				.lookupPrincipalByName(System.getProperty("user.name"));
+		if (!attributes.isDirectory() || !attributes.owner().equals(user))
+			throw new IOException("Socket directory " + dir + " is not a directory owned by the current user");
+		if (!ownerOnly.containsAll(attributes.permissions()))
+			throw new IOException("Socket directory " + dir + " is accessible by other users");
+	}
+
+	private static SocketAddress address(Path path) throws IOException {
+		try {
+			return (SocketAddress) addressOf.invoke(null, path);
+		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			throw new IOException("Invalid socket path: " + path, e);
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.asf.software.sideterminal.commands;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class BgCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new BgCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return 1;
+	}
+
+	@Override
+	public String id() {
+		return "bg";
+	}
+
+	@Override
+	public String syntax() {
+		return "[job]";
+	}
+
+	@Override
+	public String description() {
+		return "resumes a stopped background job";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		ShellJob job = getShell().findJob(args.length == 0 ? null : args[0]);
+		if (job == null) {
+			Output.writeLine("bg: no such job");
+			setExitStatus(1);
+			return false;
+		}
+
+		switch (job.getState()) {
+		case DONE:
+			Output.writeLine("bg: job " + job.getId() + " has terminated");
+			setExitStatus(1);
+			return false;
+		case RUNNING:
+			Output.writeLine("bg: job " + job.getId() + " is already running in the background");
+			return true;
+		default:
+			if (!job.resume()) {
+				Output.writeLine("bg: failed to resume job " + job.getId());
+				setExitStatus(1);
+				return false;
+			}
+			Output.writeLine(job.toString());
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.asf.software.sideterminal.commands;
+
+import java.util.Map;
+
+import org.asf.software.sideterminal.SideTermCommand;
+
+public class ExportCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new ExportCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return -1;
+	}
+
+	@Override
+	public String id() {
+		return "export";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-n] [variable[=value]...]";
+	}
+
+	@Override
+	public String description() {
+		return "passes variables to child processes (-n makes them shell-local again)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		if (args.length == 0) {
+			Map<String, String> env = getShell().getEnvironment();
+			env.keySet().stream().sorted().forEach(k -> Output.writeLine(" - " + k + " = " + env.get(k)));
+			return true;
+		}
+
+		boolean remove = args[0].equals("-n");
+		for (int i = remove ? 1 : 0; i < args.length; i++) {
+			String name = args[i];
+			if (name.contains("=")) {
+				getShell().setVariable(name.substring(0, name.indexOf("=")), name.substring(name.indexOf("=") + 1));
+				name = name.substring(0, name.indexOf("="));
+			}
+			if (name.isEmpty()) {
+				Output.writeLine("export: invalid variable name: " + args[i]);
+				setExitStatus(1);
+				continue;
+			}
+
+			if (remove)
+				getShell().unexportVariable(name);
+			else
+				getShell().exportVariable(name);
+		}
+		return true;
+	}
+
+}
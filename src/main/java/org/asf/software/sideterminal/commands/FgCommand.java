@@ -0,0 +1,52 @@
+package org.asf.software.sideterminal.commands;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class FgCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new FgCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return 1;
+	}
+
+	@Override
+	public String id() {
+		return "fg";
+	}
+
+	@Override
+	public String syntax() {
+		return "[job]";
+	}
+
+	@Override
+	public String description() {
+		return "shows the output of a background job and waits for it to finish";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		ShellJob job = getShell().findJob(args.length == 0 ? null : args[0]);
+		if (job == null) {
+			Output.writeLine("fg: no such job");
+			setExitStatus(1);
+			return false;
+		}
+
+		Output.writeLine(job.getCommand());
+		setExitStatus(getShell().foreground(job, Output));
+		return true;
+	}
+
+}
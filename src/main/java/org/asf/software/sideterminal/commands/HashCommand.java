@@ -0,0 +1,62 @@
+package org.asf.software.sideterminal.commands;
+
+import java.util.Map;
+
+import org.asf.software.sideterminal.SideTermCommand;
+
+public class HashCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new HashCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return -1;
+	}
+
+	@Override
+	public String id() {
+		return "hash";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-r] [command...]";
+	}
+
+	@Override
+	public String description() {
+		return "lists or adds cached command paths (-r clears the cache)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		int start = 0;
+		if (args.length != 0 && args[0].equals("-r")) {
+			getShell().clearHashedCommands();
+			start = 1;
+		} else if (args.length == 0) {
+			Map<String, String> paths = getShell().getHashedCommands();
+			if (paths.isEmpty())
+				Output.writeLine("hash: hash table empty");
+			paths.forEach((k, v) -> Output.writeLine(" - " + k + " = " + v));
+			return true;
+		}
+
+		for (int i = start; i < args.length; i++) {
+			if (getShell().getCommandPath(args[i]) == null) {
+				Output.writeLine("hash: " + args[i] + ": not found");
+				setExitStatus(1);
+			}
+		}
+		return true;
+	}
+
+}
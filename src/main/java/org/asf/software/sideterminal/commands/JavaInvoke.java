@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import org.asf.software.sideterminal.SideTermCommand;
 import org.asf.software.sideterminal.SideTermShell;
@@ -67,8 +68,8 @@ public class JavaInvoke extends SideTermCommand {
 
 	@Override
 	public boolean run(String[] args) {
-		if (!getShell().data.containsKey("PACKAGE") || !(getShell().data.get("PACKAGE") instanceof String)) {
-			getShell().data.put("PACKAGE", "");
+		if (!(getShell().getVariable("PACKAGE") instanceof String)) {
+			getShell().setVariable("PACKAGE", "");
 		}
 
 		String name = args[0];
@@ -79,11 +80,11 @@ public class JavaInvoke extends SideTermCommand {
 		Method selected = null;
 		Object accessor = null;
 
-		if (getShell().data.containsKey(name)) {
-			accessor = getShell().data.get(name);
+		accessor = getShell().getVariable(name);
+		if (accessor != null) {
 			cls = accessor.getClass();
 		} else {
-			String pkg = getShell().data.get("PACKAGE").toString();
+			String pkg = Objects.toString(getShell().getVariable("PACKAGE"), "");
 			if (name.contains(".")) {
 				pkg = name.substring(0, name.lastIndexOf("."));
 				name = name.substring(name.lastIndexOf(".") + 1);
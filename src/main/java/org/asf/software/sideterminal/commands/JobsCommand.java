@@ -0,0 +1,56 @@
+package org.asf.software.sideterminal.commands;
+
+import java.util.stream.Collectors;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class JobsCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new JobsCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return 1;
+	}
+
+	@Override
+	public String id() {
+		return "jobs";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-l]";
+	}
+
+	@Override
+	public String description() {
+		return "lists the background jobs (-l includes process IDs)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		boolean pids = args.length == 1;
+		if (pids && !args[0].equals("-l"))
+			return false;
+
+		for (ShellJob job : getShell().getJobs()) {
+			if (pids && !job.getProcesses().isEmpty())
+				Output.writeLine(job + " (" + job.getProcesses().stream().map(t -> Long.toString(t.pid()))
+						.collect(Collectors.joining(", ")) + ")");
+			else
+				Output.writeLine(job.toString());
+		}
+		return true;
+	}
+
+}
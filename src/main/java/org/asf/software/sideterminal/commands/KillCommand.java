@@ -0,0 +1,122 @@
+package org.asf.software.sideterminal.commands;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class KillCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new KillCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 1;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return -1;
+	}
+
+	@Override
+	public String id() {
+		return "kill";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-TERM|-KILL|-STOP|-CONT|-<signal>] <%job|pid>...";
+	}
+
+	@Override
+	public String description() {
+		return "sends a signal to background jobs or processes (TERM by default)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		String signal = "TERM";
+		int start = 0;
+		if (args[0].startsWith("-")) {
+			signal = args[0].substring(1).toUpperCase(Locale.ROOT);
+			if (signal.startsWith("SIG"))
+				signal = signal.substring(3);
+			if (signal.equals("15"))
+				signal = "TERM";
+			else if (signal.equals("9"))
+				signal = "KILL";
+			start = 1;
+		}
+		if (start >= args.length)
+			return false;
+
+		boolean success = true;
+		for (int i = start; i < args.length; i++) {
+			String target = args[i];
+			if (target.startsWith("%")) {
+				ShellJob job = getShell().findJob(target);
+				if (job == null) {
+					Output.writeLine("kill: " + target + ": no such job");
+					success = false;
+					continue;
+				}
+				if (!signalJob(job, signal)) {
+					Output.writeLine("kill: " + target + ": failed to send " + signal);
+					success = false;
+				}
+				continue;
+			}
+
+			long pid;
+			try {
+				pid = Long.parseLong(target);
+			} catch (NumberFormatException e) {
+				Output.writeLine("kill: " + target + ": arguments must be process or job IDs");
+				success = false;
+				continue;
+			}
+			Optional<ProcessHandle> proc = ProcessHandle.of(pid);
+			if (!proc.isPresent()) {
+				Output.writeLine("kill: (" + pid + ") - No such process");
+				success = false;
+				continue;
+			}
+			boolean sent;
+			if (signal.equals("TERM"))
+				sent = proc.get().destroy();
+			else if (signal.equals("KILL"))
+				sent = proc.get().destroyForcibly();
+			else
+				sent = ShellJob.signal(signal, pid);
+			if (!sent) {
+				Output.writeLine("kill: (" + pid + ") - failed to send " + signal);
+				success = false;
+			}
+		}
+		setExitStatus(success ? 0 : 1);
+		return success;
+	}
+
+	private boolean signalJob(ShellJob job, String signal) {
+		switch (signal) {
+		case "TERM":
+			job.kill(false);
+			return true;
+		case "KILL":
+			job.kill(true);
+			return true;
+		case "STOP":
+			return job.stop();
+		case "CONT":
+			return job.resume();
+		default:
+			return ShellJob.signal(signal, job.getProcesses().stream().mapToLong(t -> t.pid()).toArray());
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Objects;
 
 import org.asf.software.sideterminal.SideTermCommand;
 
@@ -44,12 +45,12 @@ public class NewCommand extends SideTermCommand {
 		String type = args[0];
 		String var = args[1];
 
-		if (!getShell().data.containsKey("PACKAGE") || !(getShell().data.get("PACKAGE") instanceof String)) {
-			getShell().data.put("PACKAGE", "");
+		if (!(getShell().getVariable("PACKAGE") instanceof String)) {
+			getShell().setVariable("PACKAGE", "");
 		}
+		String pkg = Objects.toString(getShell().getVariable("PACKAGE"), "");
 		if (!type.contains("."))
-			type = (getShell().data.get("PACKAGE").toString().isEmpty() ? "" : getShell().data.get("PACKAGE") + ".")
-					+ type;
+			type = (pkg.isEmpty() ? "" : pkg + ".") + type;
 
 		Class<?> cls = getShell().generatedClasses.get(type);
 		if (cls == null) {
@@ -83,7 +84,7 @@ public class NewCommand extends SideTermCommand {
 			selectedCtor.setAccessible(true);
 			params.addAll(JavaInvoke.parseParams(getShell(), Arrays.copyOfRange(args, 2, args.length), selectedCtor));
 			try {
-				getShell().data.put(var, selectedCtor.newInstance(params.toArray()));
+				getShell().setVariable(var, selectedCtor.newInstance(params.toArray()));
 				return true;
 			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
 					| InvocationTargetException e) {
@@ -0,0 +1,192 @@
+package org.asf.software.sideterminal.commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class ProcsCommand extends SideTermCommand {
+
+	private static final Path PROC = Paths.get("/proc");
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new ProcsCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return 4;
+	}
+
+	@Override
+	public String id() {
+		return "procs";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-r <interval>] [-n <count>]";
+	}
+
+	@Override
+	public String description() {
+		return "lists child processes with their CPU, memory and I/O usage (-r refreshes at an interval)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		long interval = -1;
+		long count = -1;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length)
+				return false;
+			if (args[i].equals("-r")) {
+				interval = TimeoutCommand.parseDuration(args[i + 1]);
+				if (interval <= 0)
+					return false;
+			} else if (args[i].equals("-n")) {
+				try {
+					count = Long.parseLong(args[i + 1]);
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			} else
+				return false;
+		}
+		if (interval < 0)
+			count = 1;
+
+		HashMap<Long, Long> lastCpu = new HashMap<Long, Long>();
+		for (long sample = 0; count < 0 || sample < count; sample++) {
+			if (sample != 0) {
+				try {
+					Thread.sleep(interval);
+				} catch (InterruptedException e) {
+					return true;
+				}
+				Output.writeLine("");
+			}
+			print(interval, lastCpu);
+		}
+		return true;
+	}
+
+	private void print(long interval, HashMap<Long, Long> lastCpu) {
+		LinkedHashMap<ProcessHandle, String> processes = new LinkedHashMap<ProcessHandle, String>();
+		for (Process proc : getShell().getChildProcesses())
+			collect(proc.toHandle(), "-", processes);
+		for (ShellJob job : getShell().getJobs()) {
+			for (Process proc : job.getProcesses())
+				collect(proc.toHandle(), "%" + job.getId(), processes);
+		}
+
+		Output.writeLine(String.format("%7s %7s %-4s %9s %9s %5s %8s %8s %8s  %s", "PID", "PPID", "JOB", "ELAPSED",
+				"CPU", "%CPU", "RSS", "READ", "WRITE", "COMMAND"));
+		HashMap<Long, Long> currentCpu = new HashMap<Long, Long>();
+		Instant now = Instant.now();
+		processes.forEach((proc, job) -> {
+			if (!proc.isAlive())
+				return;
+			ProcessHandle.Info info = proc.info();
+			long pid = proc.pid();
+
+			String elapsed = info.startInstant().map(t -> formatTime(Duration.between(t, now), false)).orElse("-");
+			Duration cpu = info.totalCpuDuration().orElse(null);
+			String cpuPercent = "-";
+			if (cpu != null) {
+				currentCpu.put(pid, cpu.toNanos());
+				Long last = lastCpu.get(pid);
+				if (last != null && interval > 0)
+					cpuPercent = String.format("%.1f", (cpu.toNanos() - last) / (interval * 10000d));
+			}
+
+			Map<String, Long> io = readValues(PROC.resolve(Long.toString(pid)).resolve("io"));
+			Map<String, Long> status = readValues(PROC.resolve(Long.toString(pid)).resolve("status"));
+			Long rss = status.get("VmRSS");
+
+			Output.writeLine(String.format("%7d %7s %-4s %9s %9s %5s %8s %8s %8s  %s", pid,
+					proc.parent().map(t -> Long.toString(t.pid())).orElse("-"), job, elapsed,
+					cpu == null ? "-" : formatTime(cpu, true), cpuPercent, formatBytes(rss, 1024),
+					formatBytes(io.get("rchar"), 1), formatBytes(io.get("wchar"), 1),
+					info.commandLine().orElse(info.command().orElse("?"))));
+		});
+		lastCpu.clear();
+		lastCpu.putAll(currentCpu);
+		if (processes.isEmpty())
+			Output.writeLine("No child processes are running.");
+	}
+
+	private static void collect(ProcessHandle proc, String job, Map<ProcessHandle, String> processes) {
+		processes.putIfAbsent(proc, job);
+		proc.descendants().forEach(t -> processes.putIfAbsent(t, job));
+	}
+
+	/**
+	 * Reads the numeric values of a /proc file (Linux only)
+	 *
+	 * @return Map of value names to the first number of their value (empty if
+	 *         unavailable)
+	 */
+	private static Map<String, Long> readValues(Path file) {
+		HashMap<String, Long> values = new HashMap<String, Long>();
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(file);
+		} catch (IOException | SecurityException e) {
+			return values;
+		}
+		for (String line : lines) {
+			int index = line.indexOf(':');
+			if (index == -1)
+				continue;
+			String value = line.substring(index + 1).trim();
+			int end = value.indexOf(' ');
+			try {
+				values.put(line.substring(0, index), Long.parseLong(end == -1 ? value : value.substring(0, end)));
+			} catch (NumberFormatException e) {
+			}
+		}
+		return values;
+	}
+
+	private static String formatTime(Duration duration, boolean fraction) {
+		long seconds = duration.getSeconds();
+		String time;
+		if (seconds >= 3600)
+			time = String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+		else
+			time = String.format("%02d:%02d", seconds / 60, seconds % 60);
+		if (fraction)
+			time += String.format(".%02d", duration.toMillis() % 1000 / 10);
+		return time;
+	}
+
+	private static String formatBytes(Long value, long unit) {
+		if (value == null)
+			return "-";
+		double bytes = value * unit;
+		String[] suffixes = new String[] { "B", "K", "M", "G", "T" };
+		int suffix = 0;
+		while (bytes >= 1024 && suffix < suffixes.length - 1) {
+			bytes /= 1024;
+			suffix++;
+		}
+		return suffix == 0 ? (long) bytes + "B" : String.format("%.1f%s", bytes, suffixes[suffix]);
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.asf.software.sideterminal.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.text.ParseException;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.shell.ShellScript;
+
+public class SourceCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new SourceCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 1;
+	}
+
+	@Override
+	public String id() {
+		return "source";
+	}
+
+	@Override
+	public String syntax() {
+		return "<script>";
+	}
+
+	@Override
+	public String description() {
+		return "runs the commands of a script file in the current shell";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		File file = new File(args[0]);
+		if (!file.isAbsolute())
+			file = new File(getShell().pwd, args[0]);
+
+		ShellScript script;
+		try {
+			script = ShellScript.load(file.toPath());
+		} catch (NoSuchFileException e) {
+			Output.writeLine("source: " + args[0] + ": no such file");
+			setExitStatus(1);
+			return false;
+		} catch (IOException e) {
+			Output.writeLine("source: " + args[0] + ": " + e);
+			setExitStatus(1);
+			return false;
+		} catch (ParseException e) {
+			Output.writeLine("source: " + args[0] + ": syntax error, " + e.getMessage());
+			setExitStatus(2);
+			return false;
+		}
+
+		try {
+			setExitStatus(getShell().runScript(script, Input, Output));
+		} catch (IOException e) {
+			setExitStatus(1);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.asf.software.sideterminal.commands;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.SideTermShell;
+
+public class TimeoutCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new TimeoutCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 2;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return -1;
+	}
+
+	@Override
+	public String id() {
+		return "timeout";
+	}
+
+	@Override
+	public String syntax() {
+		return "[-k <duration>] <duration> <command> [arguments]";
+	}
+
+	@Override
+	public String description() {
+		return "runs a program and terminates its process tree once the duration (such as 500ms, 5s or 2m) expires";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		long killAfter = SideTermShell.TERMINATE_TIMEOUT;
+		int index = 0;
+		if (args[0].equals("-k")) {
+			if (args.length < 4)
+				return false;
+			killAfter = parseDuration(args[1]);
+			index = 2;
+		}
+		long duration = parseDuration(args[index]);
+		if (duration < 0 || killAfter < 0)
+			return false;
+
+		String[] command = Arrays.copyOfRange(args, index + 1, args.length);
+		Process proc;
+		try {
+			proc = getShell().runProcess(command, Output, Input);
+		} catch (IOException e) {
+			Output.writeLine("timeout: " + args[index + 1] + ": command not found");
+			setExitStatus(127);
+			return false;
+		}
+
+		try {
+			if (duration == 0 || proc.waitFor(duration, TimeUnit.MILLISECONDS)) {
+				getShell().awaitOutput(proc);
+				setExitStatus(proc.exitValue());
+				return true;
+			}
+			SideTermShell.terminateProcessTree(proc.toHandle(), killAfter).get();
+			getShell().awaitOutput(proc);
+			setExitStatus(124);
+		} catch (InterruptedException | ExecutionException e) {
+			SideTermShell.destroyProcessTree(proc);
+			setExitStatus(130);
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a duration with an optional unit suffix (ms, s, m, h or d, seconds
+	 * if omitted)
+	 *
+	 * @param duration Duration text
+	 * @return Duration in milliseconds or -1 if invalid
+	 */
+	public static long parseDuration(String duration) {
+		String[] units = new String[] { "ms", "s", "m", "h", "d" };
+		long[] factors = new long[] { 1, 1000, 60000, 3600000, 86400000 };
+		long factor = 1000;
+		for (int i = 0; i < units.length; i++) {
+			if (duration.endsWith(units[i])) {
+				factor = factors[i];
+				duration = duration.substring(0, duration.length() - units[i].length());
+				break;
+			}
+		}
+		try {
+			double value = Double.parseDouble(duration);
+			if (value < 0 || Double.isNaN(value) || Double.isInfinite(value))
+				return -1;
+			return (long) (value * factor);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
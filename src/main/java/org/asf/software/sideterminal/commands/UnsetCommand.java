@@ -31,7 +31,7 @@ public class UnsetCommand extends SideTermCommand {
 
 	@Override
 	public boolean run(String[] args) {
-		getShell().data.remove(args[0]);
+		getShell().unsetVariable(args[0]);
 		return true;
 	}
 
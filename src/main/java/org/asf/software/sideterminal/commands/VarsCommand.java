@@ -30,7 +30,7 @@ public class VarsCommand extends SideTermCommand {
 	public boolean run(String[] args) {
 		HashMap<String, String> vars = new HashMap<String, String>();
 		vars.putAll(System.getenv());
-		getShell().data.forEach((k, v) -> {
+		getShell().getVariables().forEach((k, v) -> {
 			if (v instanceof String || JavaInvoke.PRIMITIVES.containsKey(v.getClass())
 					|| JavaInvoke.PRIMITIVES.containsValue(v.getClass()))
 				vars.put(k, v.toString());
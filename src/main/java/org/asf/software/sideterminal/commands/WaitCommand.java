@@ -0,0 +1,69 @@
+package org.asf.software.sideterminal.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.asf.software.sideterminal.ShellJob;
+
+public class WaitCommand extends SideTermCommand {
+
+	@Override
+	protected SideTermCommand newInstance() {
+		return new WaitCommand();
+	}
+
+	@Override
+	public int minimalArguments() {
+		return 0;
+	}
+
+	@Override
+	public int maximalArguments() {
+		return -1;
+	}
+
+	@Override
+	public String id() {
+		return "wait";
+	}
+
+	@Override
+	public String syntax() {
+		return "[job...]";
+	}
+
+	@Override
+	public String description() {
+		return "waits for background jobs to finish (all jobs if none are specified)";
+	}
+
+	@Override
+	public boolean run(String[] args) {
+		List<ShellJob> jobs = new ArrayList<ShellJob>();
+		if (args.length == 0)
+			jobs = getShell().getJobs();
+		for (String spec : args) {
+			ShellJob job = getShell().findJob(spec);
+			if (job == null) {
+				Output.writeLine("wait: no such job: " + spec);
+				setExitStatus(127);
+				return false;
+			}
+			jobs.add(job);
+		}
+
+		int status = 0;
+		for (ShellJob job : jobs) {
+			try {
+				status = job.waitFor();
+			} catch (InterruptedException e) {
+				setExitStatus(130);
+				return false;
+			}
+		}
+		setExitStatus(status);
+		return true;
+	}
+
+}
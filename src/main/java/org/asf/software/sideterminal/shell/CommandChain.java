@@ -0,0 +1,73 @@
+package org.asf.software.sideterminal.shell;
+
+import java.util.List;
+
+/**
+ * 
+ * Pipelines connected by conditional operators ({@code a && b || c}),
+ * terminated by {@code ;}, {@code &} or the end of the line
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class CommandChain {
+
+	public static enum Operator {
+
+		/**
+		 * Runs the next pipeline if the previous status is zero ({@code &&})
+		 */
+		AND,
+
+		/**
+		 * Runs the next pipeline if the previous status is non-zero ({@code ||})
+		 */
+		OR
+
+	}
+
+	private final List<Pipeline> pipelines;
+	private final List<Operator> operators;
+	private final boolean background;
+
+	public CommandChain(List<Pipeline> pipelines, List<Operator> operators, boolean background) {
+		if (operators.size() != pipelines.size() - 1)
+			throw new IllegalArgumentException("Expected " + (pipelines.size() - 1) + " operators");
+		this.pipelines = List.copyOf(pipelines);
+		this.operators = List.copyOf(operators);
+		this.background = background;
+	}
+
+	/**
+	 * Retrieves the pipelines (unmodifiable)
+	 */
+	public List<Pipeline> getPipelines() {
+		return pipelines;
+	}
+
+	/**
+	 * Retrieves the operators, operator i connects pipeline i and i + 1
+	 * (unmodifiable)
+	 */
+	public List<Operator> getOperators() {
+		return operators;
+	}
+
+	/**
+	 * Checks if the chain was terminated by {@code &}
+	 */
+	public boolean isBackground() {
+		return background;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(pipelines.get(0).toString());
+		for (int i = 0; i < operators.size(); i++)
+			builder.append(operators.get(i) == Operator.AND ? " && " : " || ").append(pipelines.get(i + 1));
+		if (background)
+			builder.append(" &");
+		return builder.toString();
+	}
+
+}
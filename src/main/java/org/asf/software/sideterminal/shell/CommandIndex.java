@@ -0,0 +1,128 @@
+package org.asf.software.sideterminal.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.asf.software.sideterminal.SideTermCommand;
+
+/**
+ *
+ * Command dispatch index - resolves command ids with a case-insensitive hash
+ * lookup for literal ids and a single precompiled alternation for regex
+ * ids.<br/>
+ * <br/>
+ * Lookups return the same command as a linear scan would: if several commands
+ * match, the one registered first wins. Regex ids that cannot be merged (such
+ * as ids using back-references) are matched with their own precompiled
+ * pattern.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class CommandIndex {
+
+	private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+	private SideTermCommand[] commands;
+	private HashMap<String, Integer> literals = new HashMap<String, Integer>();
+
+	private Pattern merged;
+	private int[] mergedCommands;
+	private int[] mergedGroups;
+	private ArrayList<Pattern> patterns = new ArrayList<Pattern>();
+	private ArrayList<Integer> patternCommands = new ArrayList<Integer>();
+
+	/**
+	 * Builds the index for the given commands
+	 *
+	 * @param commands Commands in priority order
+	 */
+	public CommandIndex(SideTermCommand[] commands) {
+		this.commands = commands;
+
+		StringBuilder alternation = new StringBuilder();
+		ArrayList<Integer> merging = new ArrayList<Integer>();
+		ArrayList<Integer> groups = new ArrayList<Integer>();
+		int group = 1;
+		for (int i = 0; i < commands.length; i++) {
+			SideTermCommand command = commands[i];
+			literals.putIfAbsent(command.id().toLowerCase(Locale.ROOT), i);
+			if (!command.idIsRegex())
+				continue;
+
+			Pattern pattern;
+			try {
+				pattern = Pattern.compile(command.id());
+			} catch (PatternSyntaxException e) {
+				continue;
+			}
+			if (BACKREFERENCE.matcher(command.id()).find()) {
+				patterns.add(pattern);
+				patternCommands.add(i);
+				continue;
+			}
+
+			if (alternation.length() != 0)
+				alternation.append('|');
+			alternation.append("(").append(command.id()).append(")");
+			merging.add(i);
+			groups.add(group);
+			group += pattern.matcher("").groupCount() + 1;
+		}
+
+		if (!merging.isEmpty()) {
+			try {
+				merged = Pattern.compile(alternation.toString());
+				mergedCommands = merging.stream().mapToInt(t -> t).toArray();
+				mergedGroups = groups.stream().mapToInt(t -> t).toArray();
+			} catch (PatternSyntaxException e) {
+				// Fall back to individual patterns
+				for (int i : merging) {
+					patterns.add(Pattern.compile(commands[i].id()));
+					patternCommands.add(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the indexed commands
+	 */
+	public SideTermCommand[] getCommands() {
+		return commands;
+	}
+
+	/**
+	 * Finds the command for the given id
+	 *
+	 * @param id Command id
+	 * @return SideTermCommand instance or null if not found
+	 */
+	public SideTermCommand find(String id) {
+		int best = literals.getOrDefault(id.toLowerCase(Locale.ROOT), Integer.MAX_VALUE);
+
+		if (merged != null && mergedCommands[0] < best) {
+			Matcher matcher = merged.matcher(id);
+			if (matcher.matches()) {
+				for (int i = 0; i < mergedCommands.length; i++) {
+					if (matcher.start(mergedGroups[i]) != -1) {
+						best = Math.min(best, mergedCommands[i]);
+						break;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < patterns.size(); i++) {
+			int command = patternCommands.get(i);
+			if (command < best && patterns.get(i).matcher(id).matches())
+				best = command;
+		}
+
+		return best == Integer.MAX_VALUE ? null : commands[best];
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.asf.software.sideterminal.shell;
+
+import java.util.List;
+
+/**
+ * 
+ * Parsed shell input line, instances are immutable and shared through the
+ * parser cache
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class CommandLine {
+
+	private final String source;
+	private final List<CommandChain> chains;
+	private final boolean readsInputLines;
+
+	public CommandLine(String source, List<CommandChain> chains) {
+		this.source = source;
+		this.chains = List.copyOf(chains);
+		this.readsInputLines = this.chains.stream().flatMap(t -> t.getPipelines().stream())
+				.flatMap(t -> t.getCommands().stream()).flatMap(t -> t.getWords().stream())
+				.anyMatch(t -> t.getType() == Word.Type.HEREDOC
+						|| (t.getType() == Word.Type.TEXT && t.getText().startsWith("!JAVA"))
+						|| (t.getType() == Word.Type.SUBSTITUTION && t.getSubstitution().readsInputLines()));
+	}
+
+	/**
+	 * Retrieves the input this command line was parsed from
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Retrieves the command chains in execution order (unmodifiable)
+	 */
+	public List<CommandChain> getChains() {
+		return chains;
+	}
+
+	/**
+	 * Checks if running this line reads further input lines (here-documents or
+	 * !JAVA blocks)
+	 */
+	public boolean readsInputLines() {
+		return readsInputLines;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		CommandChain last = null;
+		for (CommandChain chain : chains) {
+			if (last != null)
+				builder.append(last.isBackground() ? " " : "; ");
+			builder.append(chain);
+			last = chain;
+		}
+		return builder.toString();
+	}
+
+}
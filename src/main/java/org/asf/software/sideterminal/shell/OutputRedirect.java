@@ -0,0 +1,78 @@
+package org.asf.software.sideterminal.shell;
+
+/**
+ * 
+ * Output redirection of a command ({@code > file}, {@code >> file},
+ * {@code 2> file} or {@code 2>> file})
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class OutputRedirect {
+
+	public static enum Type {
+
+		/**
+		 * Standard output, truncates the file ({@code >})
+		 */
+		OUTPUT,
+
+		/**
+		 * Standard output, appends to the file ({@code >>})
+		 */
+		APPEND,
+
+		/**
+		 * Standard error, truncates the file ({@code 2>})
+		 */
+		ERROR,
+
+		/**
+		 * Standard error, appends to the file ({@code 2>>})
+		 */
+		ERROR_APPEND
+
+	}
+
+	private final Type type;
+	private final String target;
+
+	public OutputRedirect(Type type, String target) {
+		this.type = type;
+		this.target = target;
+	}
+
+	/**
+	 * Retrieves the redirect type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Retrieves the target file path (variables not yet expanded)
+	 */
+	public String getTarget() {
+		return target;
+	}
+
+	/**
+	 * Checks if this redirect applies to the standard error stream
+	 */
+	public boolean isError() {
+		return type == Type.ERROR || type == Type.ERROR_APPEND;
+	}
+
+	/**
+	 * Checks if the file is appended to instead of truncated
+	 */
+	public boolean isAppend() {
+		return type == Type.APPEND || type == Type.ERROR_APPEND;
+	}
+
+	@Override
+	public String toString() {
+		return (isError() ? "2" : "") + (isAppend() ? ">>" : ">") + target;
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.asf.software.sideterminal.shell;
+
+import java.util.List;
+
+/**
+ * 
+ * Commands connected by pipes ({@code a | b | c})
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class Pipeline {
+
+	private final List<SimpleCommand> commands;
+
+	public Pipeline(List<SimpleCommand> commands) {
+		this.commands = List.copyOf(commands);
+	}
+
+	/**
+	 * Retrieves the pipeline commands (unmodifiable)
+	 */
+	public List<SimpleCommand> getCommands() {
+		return commands;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (SimpleCommand command : commands) {
+			if (builder.length() != 0)
+				builder.append(" | ");
+			builder.append(command);
+		}
+		return builder.toString();
+	}
+
+}
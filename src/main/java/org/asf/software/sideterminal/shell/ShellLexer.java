@@ -0,0 +1,270 @@
+package org.asf.software.sideterminal.shell;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Shell lexer - splits an input line into words and operators in a single
+ * pass.<br/>
+ * <br/>
+ * Words are separated by whitespace, double quotes group text and backslashes
+ * escape quotes, whitespace and operator characters. Other escapes (such as
+ * {@code \$} or Windows paths) keep their backslash. A {@code #} at the start
+ * of a command begins a comment, {@code >}, {@code >>}, {@code 2>} and
+ * {@code 2>>} redirect the command output.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class ShellLexer {
+
+	private static final String OPERATORS = ";|&<>";
+	private static final String ESCAPABLE = "\\\"#;|&<> \t";
+
+	public static enum TokenType {
+		WORD, REDIRECT, PIPE, AND, OR, SEMICOLON, BACKGROUND
+	}
+
+	/**
+	 *
+	 * Lexer token
+	 *
+	 */
+	public static class Token {
+		public final TokenType type;
+		public final Word word;
+		public final OutputRedirect redirect;
+		public final int position;
+
+		public Token(TokenType type, Word word, int position) {
+			this(type, word, null, position);
+		}
+
+		public Token(TokenType type, Word word, OutputRedirect redirect, int position) {
+			this.type = type;
+			this.word = word;
+			this.redirect = redirect;
+			this.position = position;
+		}
+
+		@Override
+		public String toString() {
+			switch (type) {
+			case PIPE:
+				return "|";
+			case AND:
+				return "&&";
+			case OR:
+				return "||";
+			case SEMICOLON:
+				return ";";
+			case BACKGROUND:
+				return "&";
+			case REDIRECT:
+				return redirect.toString();
+			default:
+				return word.toString();
+			}
+		}
+	}
+
+	private final String input;
+	private final int length;
+	private int pos = 0;
+	private StringBuilder buffer = new StringBuilder();
+
+	private ShellLexer(String input) {
+		this.input = input;
+		this.length = input.length();
+	}
+
+	/**
+	 * Splits the given input into tokens
+	 *
+	 * @param input Input line
+	 * @return List of tokens
+	 * @throws ParseException If the input contains an incomplete input source
+	 */
+	public static List<Token> tokenize(String input) throws ParseException {
+		return new ShellLexer(input).tokenize();
+	}
+
+	private List<Token> tokenize() throws ParseException {
+		ArrayList<Token> tokens = new ArrayList<Token>();
+		boolean commandStart = true;
+		while (true) {
+			skipWhitespace();
+			if (pos >= length)
+				break;
+
+			int start = pos;
+			char ch = input.charAt(pos);
+			switch (ch) {
+			case ';':
+				pos++;
+				tokens.add(new Token(TokenType.SEMICOLON, null, start));
+				commandStart = true;
+				break;
+			case '|':
+				pos++;
+				if (pos < length && input.charAt(pos) == '|') {
+					pos++;
+					tokens.add(new Token(TokenType.OR, null, start));
+				} else
+					tokens.add(new Token(TokenType.PIPE, null, start));
+				commandStart = true;
+				break;
+			case '&':
+				pos++;
+				if (pos < length && input.charAt(pos) == '&') {
+					pos++;
+					tokens.add(new Token(TokenType.AND, null, start));
+				} else
+					tokens.add(new Token(TokenType.BACKGROUND, null, start));
+				commandStart = true;
+				break;
+			case '<':
+				tokens.add(new Token(TokenType.WORD, readInputSource(), start));
+				commandStart = false;
+				break;
+			case '>':
+				tokens.add(new Token(TokenType.REDIRECT, null, readRedirect(false), start));
+				commandStart = false;
+				break;
+			default:
+				if (ch == '2' && pos + 1 < length && input.charAt(pos + 1) == '>') {
+					pos++;
+					tokens.add(new Token(TokenType.REDIRECT, null, readRedirect(true), start));
+					commandStart = false;
+					break;
+				}
+				if (ch == '#' && commandStart) {
+					pos = length;
+					break;
+				}
+				tokens.add(new Token(TokenType.WORD, new Word(Word.Type.TEXT, readText()), start));
+				commandStart = false;
+				break;
+			}
+		}
+		return tokens;
+	}
+
+	private void skipWhitespace() {
+		while (pos < length && isWhitespace(input.charAt(pos)))
+			pos++;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\r';
+	}
+
+	/**
+	 * Reads a text word, quotes are removed and escapes resolved
+	 */
+	private String readText() {
+		buffer.setLength(0);
+		boolean quote = false;
+		while (pos < length) {
+			char ch = input.charAt(pos);
+			if (ch == '\\') {
+				if (pos + 1 < length) {
+					char next = input.charAt(pos + 1);
+					if (ESCAPABLE.indexOf(next) == -1)
+						buffer.append('\\');
+					buffer.append(next);
+					pos += 2;
+				} else {
+					buffer.append('\\');
+					pos++;
+				}
+				continue;
+			}
+			if (ch == '"') {
+				quote = !quote;
+				pos++;
+				continue;
+			}
+			if (!quote && (isWhitespace(ch) || OPERATORS.indexOf(ch) != -1))
+				break;
+			buffer.append(ch);
+			pos++;
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Reads an output redirect ({@code > file} or {@code >> file})
+	 */
+	private OutputRedirect readRedirect(boolean error) throws ParseException {
+		int start = error ? pos - 1 : pos;
+		pos++;
+		boolean append = pos < length && input.charAt(pos) == '>';
+		if (append)
+			pos++;
+		skipWhitespace();
+		if (pos >= length || (OPERATORS.indexOf(input.charAt(pos)) != -1))
+			throw new ParseException("missing redirect target after '" + input.substring(start, pos).trim() + "'",
+					pos);
+
+		OutputRedirect.Type type;
+		if (error)
+			type = append ? OutputRedirect.Type.ERROR_APPEND : OutputRedirect.Type.ERROR;
+		else
+			type = append ? OutputRedirect.Type.APPEND : OutputRedirect.Type.OUTPUT;
+		return new OutputRedirect(type, readText());
+	}
+
+	/**
+	 * Reads an input source ({@code < file}, {@code <<DELIM} or
+	 * {@code <(commands)})
+	 */
+	private Word readInputSource() throws ParseException {
+		int start = pos;
+		pos++;
+		boolean heredoc = pos < length && input.charAt(pos) == '<';
+		if (heredoc)
+			pos++;
+		skipWhitespace();
+		if (pos >= length || (OPERATORS.indexOf(input.charAt(pos)) != -1))
+			throw new ParseException("missing " + (heredoc ? "here-document delimiter" : "input source") + " after '"
+					+ input.substring(start, heredoc ? start + 2 : start + 1) + "'", pos);
+
+		if (heredoc)
+			return new Word(Word.Type.HEREDOC, readText());
+		if (input.charAt(pos) != '(')
+			return new Word(Word.Type.INPUT_FILE, readText());
+
+		// Command substitution, find the matching parenthesis
+		int open = pos++;
+		int depth = 1;
+		boolean quote = false;
+		while (pos < length) {
+			char ch = input.charAt(pos);
+			if (ch == '\\') {
+				pos += 2;
+				continue;
+			}
+			if (ch == '"')
+				quote = !quote;
+			else if (!quote && ch == '(')
+				depth++;
+			else if (!quote && ch == ')' && --depth == 0)
+				break;
+			pos++;
+		}
+		if (pos >= length)
+			throw new ParseException("unterminated command substitution", open);
+
+		String commands = input.substring(open + 1, pos++);
+		try {
+			// Cached with the enclosing line, not by itself
+			return new Word(Word.Type.SUBSTITUTION, commands, ShellParser.parse(commands, false));
+		} catch (ParseException e) {
+			throw new ParseException(e.getMessage(), open + 1 + e.getErrorOffset());
+		}
+	}
+
+}
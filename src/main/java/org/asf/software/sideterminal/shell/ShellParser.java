@@ -0,0 +1,151 @@
+package org.asf.software.sideterminal.shell;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asf.software.sideterminal.shell.ShellLexer.Token;
+import org.asf.software.sideterminal.shell.ShellLexer.TokenType;
+
+/**
+ *
+ * Shell parser - builds the command AST from lexer tokens.<br/>
+ * <br/>
+ * Parsed lines are kept in a LRU cache keyed by the input text so repeated
+ * commands and scripts are only parsed once, the cache size is configured by
+ * the 'sideterminal.parse.cache' system property (defaults to 256 entries, 0
+ * disables the cache).
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class ShellParser {
+
+	private static final int CACHE_SIZE = Integer.getInteger("sideterminal.parse.cache", 256);
+
+	@SuppressWarnings("serial")
+	private static final Map<String, CommandLine> cache = Collections
+			.synchronizedMap(new LinkedHashMap<String, CommandLine>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CommandLine> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
+	private final List<Token> tokens;
+	private int index = 0;
+
+	private ShellParser(List<Token> tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Parses the given input line (cached)
+	 *
+	 * @param input Input line
+	 * @return CommandLine instance
+	 * @throws ParseException If the input contains a syntax error
+	 */
+	public static CommandLine parse(String input) throws ParseException {
+		return parse(input, true);
+	}
+
+	/**
+	 * Parses the given input line
+	 *
+	 * @param input  Input line
+	 * @param cached True to use the parser cache, false to parse the line
+	 *               without reading or filling the cache (script lines)
+	 * @return CommandLine instance
+	 * @throws ParseException If the input contains a syntax error
+	 */
+	public static CommandLine parse(String input, boolean cached) throws ParseException {
+		CommandLine line = cached ? cache.get(input) : null;
+		if (line != null)
+			return line;
+
+		line = new ShellParser(ShellLexer.tokenize(input)).parseLine(input);
+		if (cached && CACHE_SIZE > 0)
+			cache.put(input, line);
+		return line;
+	}
+
+	/**
+	 * Clears the parser cache
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	private CommandLine parseLine(String input) throws ParseException {
+		ArrayList<CommandChain> chains = new ArrayList<CommandChain>();
+		while (index < tokens.size()) {
+			if (peek(TokenType.SEMICOLON)) {
+				index++;
+				continue;
+			}
+
+			ArrayList<Pipeline> pipelines = new ArrayList<Pipeline>();
+			ArrayList<CommandChain.Operator> operators = new ArrayList<CommandChain.Operator>();
+			pipelines.add(parsePipeline());
+			while (peek(TokenType.AND) || peek(TokenType.OR)) {
+				operators.add(tokens.get(index++).type == TokenType.AND ? CommandChain.Operator.AND
+						: CommandChain.Operator.OR);
+				pipelines.add(parsePipeline());
+			}
+
+			boolean background = false;
+			if (peek(TokenType.BACKGROUND)) {
+				background = true;
+				index++;
+			} else if (peek(TokenType.SEMICOLON)) {
+				index++;
+			} else if (index < tokens.size()) {
+				throw unexpected();
+			}
+			chains.add(new CommandChain(pipelines, operators, background));
+		}
+		return new CommandLine(input, chains);
+	}
+
+	private Pipeline parsePipeline() throws ParseException {
+		ArrayList<SimpleCommand> commands = new ArrayList<SimpleCommand>();
+		commands.add(parseCommand());
+		while (peek(TokenType.PIPE)) {
+			index++;
+			commands.add(parseCommand());
+		}
+		return new Pipeline(commands);
+	}
+
+	private SimpleCommand parseCommand() throws ParseException {
+		ArrayList<Word> words = new ArrayList<Word>();
+		ArrayList<OutputRedirect> redirects = new ArrayList<OutputRedirect>();
+		while (peek(TokenType.WORD) || peek(TokenType.REDIRECT)) {
+			Token token = tokens.get(index++);
+			if (token.type == TokenType.REDIRECT)
+				redirects.add(token.redirect);
+			else
+				words.add(token.word);
+		}
+		if (words.isEmpty())
+			throw unexpected();
+		return new SimpleCommand(words, redirects);
+	}
+
+	private boolean peek(TokenType type) {
+		return index < tokens.size() && tokens.get(index).type == type;
+	}
+
+	private ParseException unexpected() {
+		if (index >= tokens.size())
+			return new ParseException("unexpected end of line",
+					tokens.isEmpty() ? 0 : tokens.get(tokens.size() - 1).position);
+		Token token = tokens.get(index);
+		return new ParseException("unexpected token '" + token + "'", token.position);
+	}
+
+}
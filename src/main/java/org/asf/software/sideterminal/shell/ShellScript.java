@@ -0,0 +1,208 @@
+package org.asf.software.sideterminal.shell;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ *
+ * Parsed shell script - every command line is parsed once together with the
+ * input lines it consumes (here-documents and !JAVA blocks), so a script can
+ * run without reading or parsing lines in between commands.<br/>
+ * <br/>
+ * Loaded scripts are kept in a LRU cache by path and reparsed when the file
+ * changes, the cache size is configured by the 'sideterminal.script.cache'
+ * system property (defaults to 32 entries, 0 disables the cache). Only regular
+ * files are cached, script lines are parsed without the parser cache so
+ * scripts do not evict interactive lines.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class ShellScript {
+
+	private static final int CACHE_SIZE = Integer.getInteger("sideterminal.script.cache", 32);
+
+	@SuppressWarnings("serial")
+	private static final Map<Path, ShellScript> cache = Collections
+			.synchronizedMap(new LinkedHashMap<Path, ShellScript>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Path, ShellScript> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
+	/**
+	 *
+	 * Script command line with its input lines
+	 *
+	 */
+	public static class Entry {
+		private final CommandLine line;
+		private final List<String> input;
+		private final int lineNumber;
+
+		public Entry(CommandLine line, List<String> input, int lineNumber) {
+			this.line = line;
+			this.input = List.copyOf(input);
+			this.lineNumber = lineNumber;
+		}
+
+		/**
+		 * Retrieves the parsed command line
+		 */
+		public CommandLine getLine() {
+			return line;
+		}
+
+		/**
+		 * Retrieves the input lines consumed by the command line (unmodifiable)
+		 */
+		public List<String> getInput() {
+			return input;
+		}
+
+		/**
+		 * Retrieves the line number of the command line (starting at 1)
+		 */
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		/**
+		 * Creates a line supplier for the input lines of this entry
+		 */
+		public Supplier<String> inputSupplier() {
+			Iterator<String> lines = input.iterator();
+			return () -> lines.hasNext() ? lines.next() : null;
+		}
+	}
+
+	private final List<Entry> entries;
+	private long modified;
+	private long size;
+
+	public ShellScript(List<Entry> entries) {
+		this.entries = List.copyOf(entries);
+	}
+
+	/**
+	 * Retrieves the script entries in execution order (unmodifiable)
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Loads and parses a script file (cached if it is a regular file)
+	 *
+	 * @param file Script file
+	 * @return ShellScript instance
+	 * @throws IOException    If reading the file fails
+	 * @throws ParseException If the script contains a syntax error, the error
+	 *                        offset is the line number
+	 */
+	public static ShellScript load(Path file) throws IOException, ParseException {
+		Path key = file.toAbsolutePath().normalize();
+		BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+		ShellScript script = cache.get(key);
+		if (script != null && script.modified == attrs.lastModifiedTime().toMillis() && script.size == attrs.size())
+			return script;
+
+		script = parse(new String(Files.readAllBytes(key), StandardCharsets.UTF_8));
+		script.modified = attrs.lastModifiedTime().toMillis();
+		script.size = attrs.size();
+		if (attrs.isRegularFile() && CACHE_SIZE > 0)
+			cache.put(key, script);
+		return script;
+	}
+
+	/**
+	 * Clears the script cache
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Parses a script
+	 *
+	 * @param source Script source
+	 * @return ShellScript instance
+	 * @throws ParseException If the script contains a syntax error, the error
+	 *                        offset is the line number
+	 */
+	public static ShellScript parse(String source) throws ParseException {
+		String[] lines = source.split("\n", -1);
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].endsWith("\r"))
+				lines[i] = lines[i].substring(0, lines[i].length() - 1);
+		}
+
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		int index = 0;
+		while (index < lines.length) {
+			int lineNumber = index + 1;
+			String text = lines[index++];
+			if (text.isBlank())
+				continue;
+
+			CommandLine line;
+			try {
+				line = ShellParser.parse(text, false);
+			} catch (ParseException e) {
+				throw new ParseException("line " + lineNumber + ": " + e.getMessage(), lineNumber);
+			}
+			if (line.getChains().isEmpty())
+				continue;
+
+			int start = index;
+			if (line.readsInputLines())
+				index = consume(line, lines, index);
+			entries.add(new Entry(line, List.of(lines).subList(start, index), lineNumber));
+		}
+		return new ShellScript(entries);
+	}
+
+	/**
+	 * Skips the input lines read by the given command line, in the order the
+	 * shell reads them (here-documents of a pipeline before its !JAVA blocks)
+	 */
+	private static int consume(CommandLine line, String[] lines, int index) {
+		for (CommandChain chain : line.getChains()) {
+			for (Pipeline pipeline : chain.getPipelines()) {
+				for (SimpleCommand command : pipeline.getCommands()) {
+					for (Word word : command.getWords()) {
+						if (word.getType() == Word.Type.HEREDOC) {
+							while (index < lines.length && !lines[index++].equals(word.getText()))
+								;
+						} else if (word.getType() == Word.Type.SUBSTITUTION
+								&& word.getSubstitution().readsInputLines())
+							index = consume(word.getSubstitution(), lines, index);
+					}
+				}
+				for (SimpleCommand command : pipeline.getCommands()) {
+					Word word = command.getWords().get(0);
+					if (word.getType() != Word.Type.TEXT || !word.getText().startsWith("!JAVA"))
+						continue;
+					if (index < lines.length && lines[index++].equals("!ENDJAVA"))
+						continue;
+					while (index < lines.length && !lines[index++].trim().equals("!ENDJAVA"))
+						;
+				}
+			}
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.asf.software.sideterminal.shell;
+
+import java.util.List;
+
+/**
+ * 
+ * Single command with its words (command id and arguments) and output
+ * redirects
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class SimpleCommand {
+
+	private final List<Word> words;
+	private final List<OutputRedirect> redirects;
+
+	public SimpleCommand(List<Word> words) {
+		this(words, List.of());
+	}
+
+	public SimpleCommand(List<Word> words, List<OutputRedirect> redirects) {
+		this.words = List.copyOf(words);
+		this.redirects = List.copyOf(redirects);
+	}
+
+	/**
+	 * Retrieves the command words (unmodifiable)
+	 */
+	public List<Word> getWords() {
+		return words;
+	}
+
+	/**
+	 * Retrieves the output redirects in the order they were written
+	 * (unmodifiable)
+	 */
+	public List<OutputRedirect> getRedirects() {
+		return redirects;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Word word : words) {
+			if (builder.length() != 0)
+				builder.append(' ');
+			builder.append(word);
+		}
+		for (OutputRedirect redirect : redirects)
+			builder.append(' ').append(redirect);
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.asf.software.sideterminal.shell;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ *
+ * Variable expansion engine - replaces {@code $NAME}, {@code ${NAME}} and
+ * {@code \$} in a single scan of the text.<br/>
+ * <br/>
+ * Names are looked up in the shell variables first (only string and primitive
+ * values are expanded), then in the environment snapshot taken at startup.
+ * Unknown variables are left as-is.
+ *
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class VariableExpander {
+
+	/**
+	 * Order of environment variable names (case-insensitive on Windows)
+	 */
+	public static final Comparator<String> NAME_ORDER = File.separatorChar == '\\' ? String.CASE_INSENSITIVE_ORDER
+			: Comparator.naturalOrder();
+
+	/**
+	 * Environment snapshot (the process environment does not change at runtime),
+	 * names are looked up in {@link #NAME_ORDER}
+	 */
+	public static final Map<String, String> ENVIRONMENT = snapshotEnvironment();
+
+	private static Map<String, String> snapshotEnvironment() {
+		TreeMap<String, String> environment = new TreeMap<String, String>(NAME_ORDER);
+		environment.putAll(System.getenv());
+		return Collections.unmodifiableMap(environment);
+	}
+
+	/**
+	 * Expands the variables in the given text
+	 *
+	 * @param text      Text to expand
+	 * @param variables Shell variables
+	 * @return Expanded text
+	 */
+	public static String expand(String text, Map<String, Object> variables) {
+		int index = text.indexOf('$');
+		if (index == -1)
+			return text;
+
+		int length = text.length();
+		StringBuilder result = new StringBuilder(length + 16);
+		int start = 0;
+		while (index != -1) {
+			if (index > 0 && text.charAt(index - 1) == '\\') {
+				result.append(text, start, index - 1).append('$');
+				start = index + 1;
+				index = text.indexOf('$', start);
+				continue;
+			}
+
+			int nameStart;
+			int nameEnd;
+			int end;
+			if (index + 1 < length && text.charAt(index + 1) == '{') {
+				nameStart = index + 2;
+				nameEnd = text.indexOf('}', nameStart);
+				if (nameEnd == -1)
+					nameEnd = nameStart;
+				end = nameEnd + 1;
+			} else if (index + 1 < length && text.charAt(index + 1) == '?') {
+				nameStart = index + 1;
+				nameEnd = index + 2;
+				end = nameEnd;
+			} else {
+				nameStart = index + 1;
+				nameEnd = nameStart;
+				while (nameEnd < length && isNameChar(text.charAt(nameEnd)))
+					nameEnd++;
+				end = nameEnd;
+			}
+
+			String value = null;
+			if (nameEnd > nameStart)
+				value = lookup(text.substring(nameStart, nameEnd), variables);
+			if (value != null) {
+				result.append(text, start, index).append(value);
+				start = end;
+				index = text.indexOf('$', start);
+			} else
+				index = text.indexOf('$', index + 1);
+		}
+		result.append(text, start, length);
+		return result.toString();
+	}
+
+	private static boolean isNameChar(char ch) {
+		return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9') || ch == '_';
+	}
+
+	private static String lookup(String name, Map<String, Object> variables) {
+		Object value = variables == null ? null : variables.get(name);
+		if (value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character)
+			return value.toString();
+		return ENVIRONMENT.get(name);
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.asf.software.sideterminal.shell;
+
+/**
+ * 
+ * Command word - a literal argument or an input source that is turned into a
+ * file argument when the command runs
+ * 
+ * @author Sky Swimmer - AerialWorks Software Foundation
+ *
+ */
+public class Word {
+
+	public static enum Type {
+
+		/**
+		 * Literal text (quotes and escapes removed, variables not yet expanded)
+		 */
+		TEXT,
+
+		/**
+		 * Input file ({@code < file})
+		 */
+		INPUT_FILE,
+
+		/**
+		 * Here-document ({@code <<DELIM}), text is the delimiter
+		 */
+		HEREDOC,
+
+		/**
+		 * Command substitution ({@code <(commands)})
+		 */
+		SUBSTITUTION
+
+	}
+
+	private final Type type;
+	private final String text;
+	private final CommandLine substitution;
+
+	public Word(Type type, String text) {
+		this(type, text, null);
+	}
+
+	public Word(Type type, String text, CommandLine substitution) {
+		this.type = type;
+		this.text = text;
+		this.substitution = substitution;
+	}
+
+	/**
+	 * Retrieves the word type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Retrieves the word text (file path, delimiter or substitution source for
+	 * non-text words)
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Retrieves the parsed commands of a substitution word
+	 */
+	public CommandLine getSubstitution() {
+		return substitution;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+		case INPUT_FILE:
+			return "<" + text;
+		case HEREDOC:
+			return "<<" + text;
+		case SUBSTITUTION:
+			return "<(" + text + ")";
+		default:
+			return text;
+		}
+	}
+
+}
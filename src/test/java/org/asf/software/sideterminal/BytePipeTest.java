@@ -0,0 +1,152 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.asf.software.sideterminal.BytePipe.OverflowPolicy;
+import org.junit.Test;
+
+public class BytePipeTest {
+
+	@Test
+	public void ringWrapsAround() {
+		BytePipe pipe = new BytePipe(8);
+		assertEquals(6, pipe.write("abcdef".getBytes(), 0, 6));
+		assertEquals("abcd", read(pipe, 4));
+		assertEquals(6, pipe.write("ghijkl".getBytes(), 0, 6));
+		assertEquals(8, pipe.available());
+		assertEquals("efghijkl", read(pipe, 8));
+	}
+
+	@Test
+	public void unboundedPipeGrows() {
+		BytePipe pipe = new BytePipe(BytePipe.UNBOUNDED);
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) i;
+		assertEquals(data.length, pipe.write(data, 0, data.length));
+		assertEquals(data.length, pipe.available());
+
+		byte[] result = new byte[data.length];
+		for (int read = 0; read < result.length;)
+			read += pipe.read(result, read, result.length - read);
+		assertArrayEquals(data, result);
+	}
+
+	@Test(timeout = 10000)
+	public void blockPolicyWaitsForReader() throws InterruptedException {
+		BytePipe pipe = new BytePipe(4, OverflowPolicy.BLOCK);
+		AtomicInteger written = new AtomicInteger(-1);
+		Thread writer = new Thread(() -> written.set(pipe.write("abcdefgh".getBytes(), 0, 8)));
+		writer.start();
+		writer.join(300);
+		assertTrue("writer did not block on a full pipe", writer.isAlive());
+		assertEquals(4, pipe.available());
+
+		assertEquals("abcd", read(pipe, 4));
+		writer.join();
+		assertEquals(8, written.get());
+		assertEquals("efgh", read(pipe, 4));
+	}
+
+	@Test(timeout = 10000)
+	public void blockedWriterReturnsOnClose() throws InterruptedException {
+		BytePipe pipe = new BytePipe(4, OverflowPolicy.BLOCK);
+		AtomicInteger written = new AtomicInteger(-1);
+		Thread writer = new Thread(() -> written.set(pipe.write("abcdefgh".getBytes(), 0, 8)));
+		writer.start();
+		writer.join(300);
+		pipe.close();
+		writer.join();
+		assertEquals(4, written.get());
+		assertEquals(-1, pipe.read());
+	}
+
+	@Test
+	public void offerDoesNotBlock() {
+		BytePipe pipe = new BytePipe(4, OverflowPolicy.BLOCK);
+		assertEquals(4, pipe.offer("abcdef".getBytes(), 0, 6));
+		assertEquals(0, pipe.offer("g".getBytes(), 0, 1));
+		assertEquals("abcd", read(pipe, 4));
+	}
+
+	@Test
+	public void dropOldestKeepsNewestBytes() {
+		BytePipe pipe = new BytePipe(4, OverflowPolicy.DROP_OLDEST);
+		assertEquals(6, pipe.write("abcdef".getBytes(), 0, 6));
+		assertEquals(2, pipe.getDroppedBytes());
+		assertEquals("cdef", read(pipe, 4));
+
+		pipe.write("xy".getBytes(), 0, 2);
+		assertEquals(10, pipe.write("0123456789".getBytes(), 0, 10));
+		assertEquals(10, pipe.getDroppedBytes());
+		assertEquals("6789", read(pipe, 4));
+		assertEquals(0, pipe.available());
+	}
+
+	@Test
+	public void spillKeepsAllBytesInOrder() {
+		BytePipe pipe = new BytePipe(4, OverflowPolicy.SPILL);
+		assertEquals(10, pipe.write("0123456789".getBytes(), 0, 10));
+		assertEquals(6, pipe.getSpilledBytes());
+		assertEquals(10, pipe.available());
+
+		// Bytes written while data is spilled must follow the spilled bytes
+		assertEquals("012", read(pipe, 3));
+		pipe.write("ab".getBytes(), 0, 2);
+		assertEquals("3456789ab", read(pipe, 9));
+		assertEquals(0, pipe.getDroppedBytes());
+
+		pipe.write("cd".getBytes(), 0, 2);
+		assertEquals("cd", read(pipe, 2));
+		pipe.close();
+	}
+
+	@Test
+	public void finishedPipeDrainsBeforeEndOfStream() {
+		BytePipe pipe = new BytePipe();
+		byte[] buffer = new byte[8];
+		assertEquals(0, pipe.poll(buffer, 0, buffer.length));
+		pipe.write("abc".getBytes(), 0, 3);
+		pipe.finish();
+		assertTrue(pipe.isFinished());
+		assertEquals("abc", read(pipe, 3));
+		assertEquals(-1, pipe.read());
+		assertEquals(-1, pipe.poll(buffer, 0, buffer.length));
+	}
+
+	@Test
+	public void closeDiscardsBufferedBytes() {
+		BytePipe pipe = new BytePipe();
+		pipe.write("abc".getBytes(), 0, 3);
+		pipe.close();
+		assertEquals(0, pipe.available());
+		assertEquals(-1, pipe.read());
+		assertEquals(0, pipe.write("d".getBytes(), 0, 1));
+	}
+
+	@Test
+	public void parsesPolicyNames() {
+		assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.parse("Block", OverflowPolicy.SPILL));
+		assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.parse("drop", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.parse("drop_oldest", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.SPILL, OverflowPolicy.parse(" spill ", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.parse("unknown", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.SPILL, OverflowPolicy.parse(null, OverflowPolicy.SPILL));
+	}
+
+	private static String read(BytePipe pipe, int length) {
+		byte[] data = new byte[length];
+		for (int read = 0; read < length;) {
+			int count = pipe.read(data, read, length - read);
+			if (count == -1)
+				break;
+			read += count;
+		}
+		return new String(data);
+	}
+
+}
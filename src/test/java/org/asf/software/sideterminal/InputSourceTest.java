@@ -0,0 +1,67 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class InputSourceTest extends ShellTestBase {
+
+	private static final String LARGE_LINE = "x".repeat(1023);
+
+	@Test(timeout = 20000)
+	public void readsSmallHereDocs() throws Exception {
+		Set<String> before = pipeFiles();
+		assertEquals("hello\nworld\n", run("cat <<EOF\nhello\nworld\nEOF").replace("\r", ""));
+		assertEquals(before, pipeFiles());
+	}
+
+	@Test(timeout = 20000)
+	public void streamsLargeHereDocs() throws Exception {
+		Set<String> before = pipeFiles();
+		String output = run("cat <<EOF\n" + (LARGE_LINE + "\n").repeat(256) + "EOF").replace("\r", "");
+		assertEquals((LARGE_LINE + "\n").repeat(256), output);
+		assertEquals(before, pipeFiles());
+	}
+
+	@Test(timeout = 20000)
+	public void readsFilesAndSubstitutions() throws Exception {
+		Set<String> before = pipeFiles();
+		Path file = Files.createTempFile("sideterm-test", ".txt");
+		try {
+			Files.writeString(file, "from file\n");
+			assertEquals("from file\n", run("cat < " + file).replace("\r", ""));
+		} finally {
+			Files.delete(file);
+		}
+		assertEquals("substituted\n", run("cat <(sh -c \"echo substituted\")").replace("\r", ""));
+		assertEquals(before, pipeFiles());
+	}
+
+	@Test(timeout = 20000)
+	public void removesUnreadSources() throws Exception {
+		Set<String> before = pipeFiles();
+		for (int i = 0; i < 20; i++) {
+			run("X= <<EOF\nsecret\nEOF");
+			run("X= <<EOF\n" + (LARGE_LINE + "\n").repeat(128) + "EOF");
+			run("true <(sh -c \"echo unread\")");
+		}
+		assertEquals(0, status);
+		assertEquals(before, pipeFiles());
+	}
+
+	private static Set<String> pipeFiles() {
+		String[] names = new File(System.getProperty("java.io.tmpdir"))
+				.list((dir, name) -> name.startsWith("stsh") && name.endsWith(".pipe"));
+		assertTrue(names != null);
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+}
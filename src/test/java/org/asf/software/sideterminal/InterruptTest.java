@@ -0,0 +1,72 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InterruptTest {
+
+	private SideTermShell shell;
+
+	@Before
+	public void setup() {
+		assumeTrue(File.separatorChar == '/');
+		shell = new SideTermShell();
+		shell.setVariable("SIDETERM.HIDE.INPUT", "true");
+		shell.start();
+	}
+
+	@After
+	public void cleanup() {
+		if (shell != null)
+			shell.destroy();
+	}
+
+	@Test(timeout = 20000)
+	public void interruptStopsCommandChain() throws Exception {
+		readUntil("PID: ");
+		readLine();
+		send("sleep 30; echo NEXT-RAN");
+		Thread.sleep(500);
+		shell.interrupt();
+		send("echo s=$?");
+
+		String output = readUntil("s=");
+		assertFalse("the command chain continued after the interrupt", output.contains("NEXT-RAN"));
+		assertEquals("130", readLine());
+	}
+
+	private void send(String line) throws IOException {
+		byte[] data = (line + "\n").getBytes();
+		shell.systemInput.write(data, 0, data.length);
+	}
+
+	private String readUntil(String text) throws IOException {
+		StringBuilder output = new StringBuilder();
+		while (output.indexOf(text) == -1) {
+			int b = shell.systemOutput.read();
+			if (b == -1)
+				break;
+			output.append((char) b);
+		}
+		return output.toString();
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		for (int b = shell.systemOutput.read(); b != -1 && b != '\n'; b = shell.systemOutput.read()) {
+			if (b != '\r')
+				line.write(b);
+		}
+		return line.toString();
+	}
+
+}
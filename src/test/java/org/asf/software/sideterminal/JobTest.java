@@ -0,0 +1,90 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.software.sideterminal.shell.ShellScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobTest {
+
+	private SideTermShell shell;
+
+	@Before
+	public void setup() {
+		assumeTrue(File.separatorChar == '/');
+		shell = new SideTermShell();
+	}
+
+	@After
+	public void cleanup() {
+		if (shell != null)
+			shell.destroy();
+	}
+
+	private ShellJob startJob(String command) throws Exception {
+		ShellInputStream input = new ShellInputStream();
+		input.autoClose();
+		shell.runScript(ShellScript.parse(command + " &"), input, new ShellOutputStream());
+		assertEquals(1, shell.getJobs().size());
+		return shell.getJobs().get(0);
+	}
+
+	private List<ProcessHandle> awaitTree(ShellJob job, int size) throws InterruptedException {
+		ArrayList<ProcessHandle> tree = new ArrayList<ProcessHandle>();
+		for (int i = 0; i < 100 && tree.size() < size; i++) {
+			Thread.sleep(50);
+			tree.clear();
+			for (Process proc : job.getProcesses()) {
+				tree.add(proc.toHandle());
+				proc.descendants().forEach(t -> tree.add(t));
+			}
+		}
+		assertEquals(size, tree.size());
+		return tree;
+	}
+
+	@Test(timeout = 20000)
+	public void killTerminatesDescendants() throws Exception {
+		ShellJob job = startJob("sh -c \"sleep 100 & sleep 101\"");
+		List<ProcessHandle> tree = awaitTree(job, 3);
+
+		job.kill(false).get(10, TimeUnit.SECONDS);
+		for (ProcessHandle proc : tree)
+			assertFalse("process " + proc.pid() + " is still running", proc.isAlive());
+		assertTrue(job.waitFor() != 0);
+		assertEquals(ShellJob.State.DONE, job.getState());
+	}
+
+	@Test(timeout = 20000)
+	public void forcedKillIgnoresTermTraps() throws Exception {
+		ShellJob job = startJob("sh -c \"trap '' TERM; sleep 100\"");
+		List<ProcessHandle> tree = awaitTree(job, 2);
+
+		job.kill(true).get(10, TimeUnit.SECONDS);
+		for (ProcessHandle proc : tree)
+			assertFalse("process " + proc.pid() + " is still running", proc.isAlive());
+		assertEquals(137, job.waitFor());
+	}
+
+	@Test(timeout = 20000)
+	public void destroyTerminatesJobTrees() throws Exception {
+		ShellJob job = startJob("sh -c \"sleep 100 & sleep 101\"");
+		List<ProcessHandle> tree = awaitTree(job, 3);
+
+		shell.destroy();
+		shell = null;
+		for (ProcessHandle proc : tree)
+			assertFalse("process " + proc.pid() + " is still running", proc.isAlive());
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.software.sideterminal.shell.ShellScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelineTest {
+
+	private SideTermShell shell;
+
+	@Before
+	public void setup() {
+		assumeTrue(File.separatorChar == '/');
+		shell = new SideTermShell();
+	}
+
+	@After
+	public void cleanup() {
+		if (shell != null)
+			shell.destroy();
+	}
+
+	@Test(timeout = 20000)
+	public void upstreamTerminatesWhenReaderExits() throws Exception {
+		ShellOutputStream output = new ShellOutputStream();
+		ShellInputStream input = new ShellInputStream();
+		input.autoClose();
+		List<Process> processes = shell.runProcessPipeline(
+				List.of(new String[] { "seq", "1", "1000000000" }, new String[] { "head", "-n", "2" }), output,
+				output, input);
+
+		assertEquals(0, processes.get(1).waitFor());
+		assertEquals("1", readLine(output));
+		assertEquals("2", readLine(output));
+		processes.get(0).waitFor(10, TimeUnit.SECONDS);
+		assertFalse("upstream process is still running", processes.get(0).isAlive());
+	}
+
+	@Test(timeout = 20000)
+	public void scriptContinuesAfterEarlyExit() throws Exception {
+		ShellOutputStream output = new ShellOutputStream();
+		ShellInputStream input = new ShellInputStream();
+		input.autoClose();
+		int status = shell.runScript(ShellScript.parse("seq 1 1000000000 | head -n 1\necho done"), input, output);
+
+		assertEquals(0, status);
+		assertEquals("1", readLine(output));
+		assertEquals("done", readLine(output));
+	}
+
+	private static String readLine(ShellOutputStream output) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		for (int b = output.read(); b != -1 && b != '\n'; b = output.read()) {
+			if (b != '\r')
+				line.write(b);
+		}
+		return line.toString();
+	}
+
+}
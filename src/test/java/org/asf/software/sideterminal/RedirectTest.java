@@ -0,0 +1,83 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RedirectTest extends ShellTestBase {
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws Exception {
+		directory = Files.createTempDirectory("sideterm-test");
+	}
+
+	@After
+	public void deleteDirectory() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toArray(t -> new Path[t]))
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	@Test(timeout = 20000)
+	public void truncatesAndAppends() throws Exception {
+		Path file = directory.resolve("out.txt");
+		run("sh -c \"echo one\" > " + file);
+		run("sh -c \"echo two\" > " + file);
+		assertEquals("two\n", Files.readString(file));
+
+		assertEquals("", run("sh -c \"echo three\" >> " + file));
+		assertEquals("two\nthree\n", Files.readString(file));
+	}
+
+	@Test(timeout = 20000)
+	public void redirectsErrorsToFiles() throws Exception {
+		Path file = directory.resolve("err.txt");
+		String output = run("sh -c \"echo out; echo one >&2\" 2> " + file);
+		assertEquals("out\n", output.replace("\r", ""));
+		assertEquals("one\n", Files.readString(file));
+
+		run("sh -c \"echo two >&2\" 2>> " + file);
+		assertEquals("one\ntwo\n", Files.readString(file));
+	}
+
+	@Test(timeout = 20000)
+	public void redirectsBuiltins() throws Exception {
+		Path file = directory.resolve("builtin.txt");
+		String output = run("export SIDETERM_TEST=x\nexport > " + file);
+		assertFalse(output.contains("SIDETERM_TEST"));
+		assertEquals(1, Files.readAllLines(file).stream().filter(t -> t.equals(" - SIDETERM_TEST = x")).count());
+
+		run("export SIDETERM_TEST=y\nexport >> " + file);
+		assertEquals(2, Files.readAllLines(file).stream().filter(t -> t.startsWith(" - SIDETERM_TEST = ")).count());
+	}
+
+	@Test(timeout = 20000)
+	public void redirectsTheEndOfPipelines() throws Exception {
+		Path file = directory.resolve("pipeline.txt");
+		assertEquals("", run("sh -c \"echo a; echo b\" | sort -r > " + file));
+		assertEquals("b\na\n", Files.readString(file));
+
+		run("export SIDETERM_TEST=z\nexport | grep SIDETERM_TEST > " + file);
+		assertEquals(" - SIDETERM_TEST = z\n", Files.readString(file));
+	}
+
+	@Test(timeout = 20000)
+	public void reportsUnwritableTargets() throws Exception {
+		Path file = directory.resolve("missing").resolve("out.txt");
+		String output = run("sh -c \"echo lost\" > " + file);
+		assertEquals(1, status);
+		assertEquals("Cannot write to " + file + ": no such file or directory\n", output.replace("\r", ""));
+	}
+
+}
@@ -0,0 +1,37 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+
+import org.asf.software.sideterminal.shell.ShellScript;
+import org.junit.After;
+import org.junit.Before;
+
+public abstract class ShellTestBase {
+
+	protected SideTermShell shell;
+	protected int status;
+
+	@Before
+	public void setup() {
+		assumeTrue(File.separatorChar == '/');
+		shell = new SideTermShell();
+	}
+
+	@After
+	public void cleanup() {
+		if (shell != null)
+			shell.destroy();
+	}
+
+	protected String run(String script) throws Exception {
+		ShellOutputStream output = new ShellOutputStream();
+		ShellInputStream input = new ShellInputStream();
+		input.autoClose();
+		status = shell.runScript(ShellScript.parse(script), input, output);
+		output.autoClose();
+		return new String(output.readAllBytes());
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.asf.software.sideterminal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.asf.software.sideterminal.SideTermProtocol.Frame;
+import org.junit.Test;
+
+public class SideTermProtocolTest {
+
+	@Test
+	public void framesRoundTrip() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] data = "hello world".getBytes();
+		SideTermProtocol.writeFrame(output, SideTermProtocol.CHANNEL_STDIN, data, 6, 5);
+		output.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL,
+				SideTermProtocol.control(SideTermProtocol.CONTROL_RESIZE, 120, -1)));
+		output.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_HEARTBEAT, new byte[0]));
+
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+		Frame frame = SideTermProtocol.readFrame(input);
+		assertEquals(SideTermProtocol.CHANNEL_STDIN, frame.channel);
+		assertArrayEquals("world".getBytes(), frame.payload);
+
+		frame = SideTermProtocol.readFrame(input);
+		assertEquals(SideTermProtocol.CHANNEL_CONTROL, frame.channel);
+		assertEquals(SideTermProtocol.CONTROL_RESIZE, frame.controlType());
+		assertEquals(120, frame.controlValue(0));
+		assertEquals(-1, frame.controlValue(1));
+		assertEquals(0, frame.controlValue(2));
+
+		frame = SideTermProtocol.readFrame(input);
+		assertEquals(SideTermProtocol.CHANNEL_HEARTBEAT, frame.channel);
+		assertEquals(-1, frame.controlType());
+	}
+
+	@Test
+	public void rejectsInvalidFrameLengths() {
+		byte[] frame = { (byte) SideTermProtocol.CHANNEL_STDOUT, 0x7f, 0, 0, 0 };
+		try {
+			SideTermProtocol.readFrame(new DataInputStream(new ByteArrayInputStream(frame)));
+			fail("expected an invalid frame length error");
+		} catch (IOException e) {
+			assertEquals("Invalid frame length: " + 0x7f000000, e.getMessage());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void deflatedFramesArriveAfterSyncFlush() throws IOException {
+		PipedInputStream connection = new PipedInputStream(65536);
+		PipedOutputStream server = new PipedOutputStream(connection);
+
+		// Compressed output starts with the scrollback, followed by the frames
+		byte[] scrollback = "previous output\n".repeat(100).getBytes();
+		server.write(SideTermProtocol.MAGIC);
+		server.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL, SideTermProtocol.control(
+				SideTermProtocol.CONTROL_HELLO, SideTermProtocol.VERSION, SideTermProtocol.FLAG_COMPRESSION, 7,
+				scrollback.length)));
+		DeflaterOutputStream deflated = new DeflaterOutputStream(server, new Deflater(), true);
+		deflated.write(scrollback);
+		deflated.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_STDOUT, "first".getBytes()));
+		deflated.flush();
+
+		DataInputStream input = new DataInputStream(connection);
+		byte[] magic = new byte[SideTermProtocol.MAGIC.length];
+		input.readFully(magic);
+		assertArrayEquals(SideTermProtocol.MAGIC, magic);
+		Frame hello = SideTermProtocol.readFrame(input);
+		assertEquals(SideTermProtocol.CONTROL_HELLO, hello.controlType());
+		assertEquals(7, hello.controlValue(2));
+
+		DataInputStream frames = new DataInputStream(new InflaterInputStream(connection, new Inflater(), 65536));
+		byte[] history = new byte[hello.controlValue(3)];
+		frames.readFully(history);
+		assertArrayEquals(scrollback, history);
+		assertArrayEquals("first".getBytes(), SideTermProtocol.readFrame(frames).payload);
+
+		// The stream stays open, each sync flush makes the next frames readable
+		deflated.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_STDERR, "second".getBytes()));
+		deflated.write(SideTermProtocol.frame(SideTermProtocol.CHANNEL_CONTROL,
+				SideTermProtocol.control(SideTermProtocol.CONTROL_EXIT, 3)));
+		deflated.flush();
+		Frame frame = SideTermProtocol.readFrame(frames);
+		assertEquals(SideTermProtocol.CHANNEL_STDERR, frame.channel);
+		assertArrayEquals("second".getBytes(), frame.payload);
+		frame = SideTermProtocol.readFrame(frames);
+		assertEquals(SideTermProtocol.CONTROL_EXIT, frame.controlType());
+		assertEquals(3, frame.controlValue(0));
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.asf.software.sideterminal.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.asf.software.sideterminal.ShellTestBase;
+import org.junit.Test;
+
+public class ExportCommandTest extends ShellTestBase {
+
+	private static final String PRINT = "sh -c \"echo [\\$SIDETERM_TEST]\"";
+
+	@Test(timeout = 20000)
+	public void exportedVariablesReachChildProcesses() throws Exception {
+		List<String> output = lines(run(String.join("\n", "SIDETERM_TEST=a", PRINT, "export SIDETERM_TEST", PRINT,
+				"SIDETERM_TEST=b", PRINT, "export -n SIDETERM_TEST", PRINT)));
+		assertEquals(List.of("[]", "[a]", "[b]", "[]"), output);
+		assertEquals("b", shell.getVariable("SIDETERM_TEST"));
+	}
+
+	@Test(timeout = 20000)
+	public void exportAssignsAndUnsetRemoves() throws Exception {
+		run("export SIDETERM_TEST=x");
+		assertTrue(shell.isExported("SIDETERM_TEST"));
+		assertEquals("x", shell.getEnvironment().get("SIDETERM_TEST"));
+		assertEquals(List.of("[x]"), lines(run(PRINT)));
+
+		run("unset SIDETERM_TEST");
+		assertFalse(shell.isExported("SIDETERM_TEST"));
+		assertFalse(shell.getEnvironment().containsKey("SIDETERM_TEST"));
+		assertEquals(List.of("[]"), lines(run(PRINT)));
+	}
+
+	@Test(timeout = 20000)
+	public void systemEnvironmentIsExported() throws Exception {
+		assumeTrue(System.getenv("PATH") != null);
+		assertTrue(shell.isExported("PATH"));
+		assertTrue(run("export").contains(" - PATH = " + System.getenv("PATH")));
+	}
+
+	@Test(timeout = 20000)
+	public void rejectsEmptyNames() throws Exception {
+		String output = run("export =x");
+		assertEquals(1, status);
+		assertTrue(output.contains("export: invalid variable name: =x"));
+	}
+
+	private static List<String> lines(String output) {
+		return Arrays.asList(output.replace("\r", "").split("\n"));
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.asf.software.sideterminal.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.asf.software.sideterminal.ShellTestBase;
+import org.junit.Test;
+
+public class HashCommandTest extends ShellTestBase {
+
+	@Test(timeout = 20000)
+	public void listsResolvedCommands() throws Exception {
+		run("hash -r");
+		assertEquals("hash: hash table empty", run("hash").trim());
+
+		run("sh -c true");
+		String path = shell.getHashedCommands().get("sh");
+		assertNotNull("sh was not hashed", path);
+		assertTrue(new File(path).isAbsolute());
+		assertTrue(run("hash").contains(" - sh = " + path));
+
+		run("hash -r");
+		assertTrue(shell.getHashedCommands().isEmpty());
+	}
+
+	@Test(timeout = 20000)
+	public void reportsMissingCommands() throws Exception {
+		String output = run("hash sh sideterm-missing-command");
+		assertEquals(1, status);
+		assertTrue(output.contains("hash: sideterm-missing-command: not found"));
+		assertTrue(shell.getHashedCommands().containsKey("sh"));
+		assertEquals(1, shell.getHashedCommands().size());
+	}
+
+	@Test(timeout = 20000)
+	public void pathChangeClearsTheTable() throws Exception {
+		run("hash sh");
+		assertTrue(shell.getHashedCommands().containsKey("sh"));
+		shell.setVariable("PATH", "/nonexistent" + File.pathSeparator + System.getenv("PATH"));
+		assertTrue(shell.getHashedCommands().isEmpty());
+	}
+
+}
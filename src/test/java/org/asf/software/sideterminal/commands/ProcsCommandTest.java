@@ -0,0 +1,55 @@
+package org.asf.software.sideterminal.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.asf.software.sideterminal.ShellJob;
+import org.asf.software.sideterminal.ShellTestBase;
+import org.junit.Test;
+
+public class ProcsCommandTest extends ShellTestBase {
+
+	private static final String HEADER = "    PID    PPID JOB";
+
+	@Test(timeout = 20000)
+	public void reportsMissingChildren() throws Exception {
+		String output = run("procs");
+		assertTrue(output.startsWith(HEADER));
+		assertTrue(output.contains("No child processes are running."));
+	}
+
+	@Test(timeout = 20000)
+	public void listsJobProcesses() throws Exception {
+		run("sleep 30 &");
+		assertEquals(1, shell.getJobs().size());
+		ShellJob job = shell.getJobs().get(0);
+		for (int i = 0; i < 100 && job.getProcesses().isEmpty(); i++)
+			Thread.sleep(50);
+		assertFalse(job.getProcesses().isEmpty());
+
+		long pid = job.getProcesses().get(0).pid();
+		String line = null;
+		for (String row : run("procs").split("\n")) {
+			if (row.trim().startsWith(pid + " "))
+				line = row;
+		}
+		assertTrue("process " + pid + " is not listed", line != null);
+		assertTrue(line.contains(" %" + job.getId() + " "));
+		assertTrue(line.trim().endsWith("sleep 30"));
+	}
+
+	@Test(timeout = 20000)
+	public void refreshesAtAnInterval() throws Exception {
+		String output = run("procs -r 100ms -n 3");
+		assertEquals(3, output.split(HEADER, -1).length - 1);
+	}
+
+	@Test(timeout = 20000)
+	public void rejectsInvalidArguments() throws Exception {
+		assertFalse(run("procs -r").contains(HEADER));
+		assertFalse(run("procs -r 0").contains(HEADER));
+		assertFalse(run("procs -x 1").contains(HEADER));
+	}
+
+}
@@ -0,0 +1,54 @@
+package org.asf.software.sideterminal.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.asf.software.sideterminal.ShellTestBase;
+import org.asf.software.sideterminal.SideTermShell;
+import org.junit.Test;
+
+public class TimeoutCommandTest extends ShellTestBase {
+
+	@Test
+	public void parsesDurations() {
+		assertEquals(250, TimeoutCommand.parseDuration("250ms"));
+		assertEquals(1500, TimeoutCommand.parseDuration("1.5s"));
+		assertEquals(3000, TimeoutCommand.parseDuration("3"));
+		assertEquals(120000, TimeoutCommand.parseDuration("2m"));
+		assertEquals(3600000, TimeoutCommand.parseDuration("1h"));
+		assertEquals(86400000, TimeoutCommand.parseDuration("1d"));
+		assertEquals(-1, TimeoutCommand.parseDuration("-1"));
+		assertEquals(-1, TimeoutCommand.parseDuration("soon"));
+	}
+
+	@Test(timeout = 20000)
+	public void reportsTheCommandStatus() throws Exception {
+		run("timeout 10 sh -c \"exit 3\"");
+		assertEquals(3, status);
+	}
+
+	@Test(timeout = 20000)
+	public void terminatesExpiredCommands() throws Exception {
+		long start = System.currentTimeMillis();
+		run("timeout 200ms sleep 30");
+		assertEquals(124, status);
+		assertTrue(System.currentTimeMillis() - start < 10000);
+	}
+
+	@Test(timeout = 20000)
+	public void killsCommandsIgnoringTermination() throws Exception {
+		long start = System.currentTimeMillis();
+		run("timeout -k 200ms 200ms sh -c \"trap '' TERM; while true; do sleep 0.1; done\"");
+		assertEquals(124, status);
+		assertTrue("the kill timeout was not applied",
+				System.currentTimeMillis() - start < SideTermShell.TERMINATE_TIMEOUT);
+	}
+
+	@Test(timeout = 20000)
+	public void reportsMissingCommands() throws Exception {
+		String output = run("timeout 1 sideterm-missing-command");
+		assertTrue(output.contains("timeout: sideterm-missing-command: command not found"));
+		assertEquals(127, status);
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.asf.software.sideterminal.shell;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.asf.software.sideterminal.SideTermCommand;
+import org.junit.Test;
+
+public class CommandIndexTest {
+
+	private static class TestCommand extends SideTermCommand {
+		private final String id;
+		private final boolean regex;
+
+		TestCommand(String id, boolean regex) {
+			this.id = id;
+			this.regex = regex;
+		}
+
+		@Override
+		protected SideTermCommand newInstance() {
+			return new TestCommand(id, regex);
+		}
+
+		@Override
+		public boolean idIsRegex() {
+			return regex;
+		}
+
+		@Override
+		public int minimalArguments() {
+			return 0;
+		}
+
+		@Override
+		public String id() {
+			return id;
+		}
+
+		@Override
+		public String description() {
+			return id;
+		}
+
+		@Override
+		public boolean run(String[] args) {
+			return true;
+		}
+	}
+
+	private static TestCommand literal(String id) {
+		return new TestCommand(id, false);
+	}
+
+	private static TestCommand regex(String id) {
+		return new TestCommand(id, true);
+	}
+
+	@Test
+	public void findsLiteralsIgnoringCase() {
+		TestCommand echo = literal("echo");
+		TestCommand help = literal("Help");
+		CommandIndex index = new CommandIndex(new SideTermCommand[] { echo, help });
+		assertSame(echo, index.find("ECHO"));
+		assertSame(help, index.find("help"));
+		assertNull(index.find("ech"));
+	}
+
+	@Test
+	public void earlierCommandsWin() {
+		TestCommand pattern = regex("ech.*");
+		TestCommand echo = literal("echo");
+		assertSame(pattern, new CommandIndex(new SideTermCommand[] { pattern, echo }).find("echo"));
+		assertSame(echo, new CommandIndex(new SideTermCommand[] { echo, pattern }).find("echo"));
+
+		TestCommand first = literal("dup");
+		assertSame(first, new CommandIndex(new SideTermCommand[] { first, literal("DUP") }).find("dup"));
+	}
+
+	@Test
+	public void resolvesMergedPatternsWithGroups() {
+		TestCommand grouped = regex("(x)(y)z");
+		TestCommand any = regex("x.*");
+		TestCommand exact = regex("xyw");
+		CommandIndex index = new CommandIndex(new SideTermCommand[] { grouped, any, exact });
+		assertSame(grouped, index.find("xyz"));
+		assertSame(any, index.find("xyw"));
+		assertSame(exact, new CommandIndex(new SideTermCommand[] { grouped, exact, any }).find("xyw"));
+		assertNull(index.find("yx"));
+	}
+
+	@Test
+	public void matchesBackreferencePatternsSeparately() {
+		TestCommand twice = regex("(.)\\1");
+		CommandIndex index = new CommandIndex(new SideTermCommand[] { regex("a+b"), twice });
+		assertSame(twice, index.find("cc"));
+		assertNull(index.find("cd"));
+	}
+
+	@Test
+	public void skipsInvalidPatterns() {
+		TestCommand invalid = regex("(");
+		TestCommand valid = regex("v.");
+		CommandIndex index = new CommandIndex(new SideTermCommand[] { invalid, valid });
+		assertSame(valid, index.find("vx"));
+		assertSame(invalid, index.find("("));
+	}
+
+	@Test
+	public void matchesLinearScan() {
+		SideTermCommand[] commands = { literal("cd"), regex("c[a-z]"), literal("ls"), regex("l+s?"),
+				regex("(a|b)(\\d+)"), regex("(.)\\1x"), literal("A1"), regex("[a-z]+"), literal("zz") };
+		CommandIndex index = new CommandIndex(commands);
+		String[] ids = { "cd", "CD", "ca", "ls", "lll", "l", "a1", "A1", "b22", "aax", "bbx", "zz", "ZZ", "q", "",
+				"1", "c1" };
+		for (String id : ids) {
+			SideTermCommand expected = null;
+			for (SideTermCommand command : commands) {
+				if (command.id().equalsIgnoreCase(id) || (command.idIsRegex() && id.matches(command.id()))) {
+					expected = command;
+					break;
+				}
+			}
+			assertSame("command for '" + id + "'", expected, index.find(id));
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package org.asf.software.sideterminal.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ShellParserTest {
+
+	@Test
+	public void parsesChainsAndPipelines() throws ParseException {
+		CommandLine line = ShellParser.parse("a x | b && c || d; e &");
+		assertEquals(2, line.getChains().size());
+
+		CommandChain first = line.getChains().get(0);
+		assertEquals(List.of(CommandChain.Operator.AND, CommandChain.Operator.OR), first.getOperators());
+		assertEquals(3, first.getPipelines().size());
+		assertEquals(2, first.getPipelines().get(0).getCommands().size());
+		assertEquals(List.of("a", "x"), texts(first.getPipelines().get(0).getCommands().get(0)));
+		assertFalse(first.isBackground());
+
+		CommandChain second = line.getChains().get(1);
+		assertEquals(List.of("e"), texts(second.getPipelines().get(0).getCommands().get(0)));
+		assertTrue(second.isBackground());
+		assertEquals("a x | b && c || d; e &", line.toString());
+	}
+
+	@Test
+	public void resolvesQuotesAndEscapes() throws ParseException {
+		CommandLine line = ShellParser.parse("echo \"a b\" c\\ d \\\"q\\\" \\$HOME C:\\dir x\\;y");
+		assertEquals(List.of("echo", "a b", "c d", "\"q\"", "\\$HOME", "C:\\dir", "x;y"),
+				texts(line.getChains().get(0).getPipelines().get(0).getCommands().get(0)));
+	}
+
+	@Test
+	public void skipsComments() throws ParseException {
+		assertTrue(ShellParser.parse("# comment | x").getChains().isEmpty());
+		assertTrue(ShellParser.parse("   ").getChains().isEmpty());
+		assertEquals(1, ShellParser.parse("echo a; # b; c").getChains().size());
+	}
+
+	@Test
+	public void parsesInputSources() throws ParseException {
+		CommandLine line = ShellParser.parse("cat <file <<EOF <(echo \"(a)\" | b)");
+		List<Word> words = line.getChains().get(0).getPipelines().get(0).getCommands().get(0).getWords();
+		assertEquals(Word.Type.INPUT_FILE, words.get(1).getType());
+		assertEquals("file", words.get(1).getText());
+		assertEquals(Word.Type.HEREDOC, words.get(2).getType());
+		assertEquals("EOF", words.get(2).getText());
+		assertEquals(Word.Type.SUBSTITUTION, words.get(3).getType());
+		assertEquals("echo \"(a)\" | b", words.get(3).getText());
+		assertEquals(2, words.get(3).getSubstitution().getChains().get(0).getPipelines().get(0).getCommands().size());
+		assertTrue(line.readsInputLines());
+		assertFalse(ShellParser.parse("cat <file").readsInputLines());
+	}
+
+	@Test
+	public void reportsSyntaxErrors() {
+		assertParseError("a |", "unexpected end of line", 2);
+		assertParseError("| a", "unexpected token '|'", 0);
+		assertParseError("a && && b", "unexpected token '&&'", 5);
+		assertParseError("cat <(echo a", "unterminated command substitution", 5);
+		assertParseError("cat <", "missing input source after '<'", 5);
+	}
+
+	@Test
+	public void cachesParsedLines() throws ParseException {
+		ShellParser.clearCache();
+		CommandLine line = ShellParser.parse("echo cached");
+		assertSame(line, ShellParser.parse("echo cached"));
+		ShellParser.clearCache();
+		assertNotSame(line, ShellParser.parse("echo cached"));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedLines() throws ParseException {
+		int size = Integer.getInteger("sideterminal.parse.cache", 256);
+		assumeTrue(size > 1);
+
+		ShellParser.clearCache();
+		CommandLine first = ShellParser.parse("echo 0");
+		CommandLine second = ShellParser.parse("echo 1");
+		for (int i = 2; i < size; i++)
+			ShellParser.parse("echo " + i);
+
+		// Using the first line makes the second one the eldest entry
+		assertSame(first, ShellParser.parse("echo 0"));
+		ShellParser.parse("echo " + size);
+		assertSame(first, ShellParser.parse("echo 0"));
+		assertNotSame(second, ShellParser.parse("echo 1"));
+	}
+
+	private static List<String> texts(SimpleCommand command) {
+		return command.getWords().stream().map(Word::getText).collect(Collectors.toList());
+	}
+
+	private static void assertParseError(String input, String message, int offset) {
+		try {
+			ShellParser.parse(input);
+			fail("expected a parse error for: " + input);
+		} catch (ParseException e) {
+			assertEquals(message, e.getMessage());
+			assertEquals(offset, e.getErrorOffset());
+		}
+	}
+
+}
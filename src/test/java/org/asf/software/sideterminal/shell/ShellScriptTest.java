@@ -0,0 +1,91 @@
+package org.asf.software.sideterminal.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShellScriptTest {
+
+	private Path directory;
+
+	@Before
+	public void setup() throws Exception {
+		directory = Files.createTempDirectory("sideterm-test");
+		ShellScript.clearCache();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		ShellScript.clearCache();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toArray(t -> new Path[t]))
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void assignsInputLinesToCommands() throws ParseException {
+		ShellScript script = ShellScript.parse("cat <<EOF\na\nEOF\n\necho b");
+		List<ShellScript.Entry> entries = script.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals(List.of("a", "EOF"), entries.get(0).getInput());
+		assertEquals(5, entries.get(1).getLineNumber());
+	}
+
+	@Test
+	public void parsesWithoutTheParserCache() throws ParseException {
+		ShellParser.clearCache();
+		CommandLine line = ShellParser.parse("echo interactive");
+		CommandLine scriptLine = ShellScript.parse("echo interactive").getEntries().get(0).getLine();
+		assertNotSame(line, scriptLine);
+		assertSame(line, ShellParser.parse("echo interactive"));
+	}
+
+	@Test
+	public void reloadsChangedScripts() throws Exception {
+		Path file = write("script.sh", "echo a");
+		ShellScript script = ShellScript.load(file);
+		assertSame(script, ShellScript.load(file));
+
+		Files.writeString(file, "echo a\necho b");
+		assertEquals(2, ShellScript.load(file).getEntries().size());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedScripts() throws Exception {
+		int size = Integer.getInteger("sideterminal.script.cache", 32);
+		assumeTrue(size > 1);
+
+		ArrayList<Path> files = new ArrayList<Path>();
+		for (int i = 0; i <= size; i++)
+			files.add(write("script" + i + ".sh", "echo " + i));
+		ShellScript first = ShellScript.load(files.get(0));
+		ShellScript second = ShellScript.load(files.get(1));
+		for (int i = 2; i < size; i++)
+			ShellScript.load(files.get(i));
+
+		// Using the first script makes the second one the eldest entry
+		assertSame(first, ShellScript.load(files.get(0)));
+		ShellScript.load(files.get(size));
+		assertSame(first, ShellScript.load(files.get(0)));
+		assertNotSame(second, ShellScript.load(files.get(1)));
+	}
+
+	private Path write(String name, String source) throws Exception {
+		return Files.writeString(directory.resolve(name), source);
+	}
+
+}
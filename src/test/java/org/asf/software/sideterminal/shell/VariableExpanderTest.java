@@ -0,0 +1,76 @@
+package org.asf.software.sideterminal.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class VariableExpanderTest {
+
+	private static Map<String, Object> variables() {
+		HashMap<String, Object> variables = new HashMap<String, Object>();
+		variables.put("A", "alpha");
+		variables.put("B_2", "beta");
+		variables.put("?", 130);
+		variables.put("FLAG", true);
+		variables.put("OBJ", new Object());
+		return variables;
+	}
+
+	@Test
+	public void expandsVariables() {
+		Map<String, Object> variables = variables();
+		assertEquals("alpha", VariableExpander.expand("$A", variables));
+		assertEquals("[alpha-beta]", VariableExpander.expand("[$A-$B_2]", variables));
+		assertEquals("alphabeta", VariableExpander.expand("${A}beta", variables));
+		assertEquals("s=130!", VariableExpander.expand("s=$?!", variables));
+		assertEquals("true", VariableExpander.expand("$FLAG", variables));
+	}
+
+	@Test
+	public void keepsUnresolvedReferences() {
+		Map<String, Object> variables = variables();
+		assertEquals("$SIDETERM_UNDEFINED", VariableExpander.expand("$SIDETERM_UNDEFINED", variables));
+		assertEquals("$OBJ", VariableExpander.expand("$OBJ", variables));
+		assertEquals("cost: $ 5", VariableExpander.expand("cost: $ 5", variables));
+		assertEquals("${A", VariableExpander.expand("${A", variables));
+		assertEquals("a$", VariableExpander.expand("a$", variables));
+	}
+
+	@Test
+	public void resolvesEscapes() {
+		assertEquals("$A alpha", VariableExpander.expand("\\$A $A", variables()));
+	}
+
+	@Test
+	public void returnsTextWithoutReferencesUnchanged() {
+		String text = "no references here";
+		assertSame(text, VariableExpander.expand(text, variables()));
+	}
+
+	@Test
+	public void fallsBackToTheEnvironment() {
+		assumeFalse(System.getenv().isEmpty());
+		Map.Entry<String, String> entry = System.getenv().entrySet().iterator().next();
+		String reference = "${" + entry.getKey() + "}";
+		assertEquals(entry.getValue(), VariableExpander.expand(reference, null));
+
+		HashMap<String, Object> variables = new HashMap<String, Object>();
+		variables.put(entry.getKey(), "shadowed");
+		assertEquals("shadowed", VariableExpander.expand(reference, variables));
+	}
+
+	@Test
+	public void namesFollowThePlatformCase() {
+		boolean windows = File.separatorChar == '\\';
+		assertEquals(windows, VariableExpander.NAME_ORDER.compare("Path", "PATH") == 0);
+		if (windows && System.getenv("Path") != null)
+			assertEquals(System.getenv("Path"), VariableExpander.ENVIRONMENT.get("PATH"));
+	}
+
+}